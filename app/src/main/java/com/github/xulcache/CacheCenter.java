@@ -5,15 +5,32 @@ import android.text.TextUtils;
 import android.util.Log;
 
 import com.github.xulcache.cachedomain.FileCacheDomain;
+import com.github.xulcache.cachedomain.LogFileCacheDomain;
 import com.github.xulcache.cachedomain.MemoryCacheDomain;
+import com.github.xulcache.cachedomain.OffHeapMemoryCacheDomain;
 import com.github.xulcache.cachedomain.PropertyCacheDomain;
 import com.github.xulcache.cachedomain.WriteBackCacheDomain;
 import com.github.xulcache.cachedomain.WriteThroughCacheDomain;
+import com.github.xulcache.cacheimplement.CacheImpl;
+import com.github.xulcache.cacheimplement.FileCache;
+import com.github.xulcache.cacheimplement.LogFileCache;
+import com.github.xulcache.cacheimplement.MemoryCache;
+import com.github.xulcache.cacheimplement.OffHeapMemoryCache;
+import com.github.xulcache.cacherecycle.RecycleStrategy;
+import com.github.xulcache.event.CacheEventListener;
+import com.github.xulcache.stats.CacheStats;
+import com.github.xulcache.utils.BitmapPool;
 import com.github.xulcache.utils.SystemUtil;
+import com.github.xulcache.weigher.DefaultWeigher;
+import com.github.xulcache.weigher.Weigher;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
 
 public class CacheCenter {
 
@@ -60,6 +77,11 @@ public class CacheCenter {
      * Cache in memory and file at the same time
      */
     public static final int CACHE_FLAG_WRITE_THROUGH = 0x80000 | CACHE_FLAG_WRITE_BACK;
+    /**
+     * 内存缓存中的byte[]和String数据保存在堆外内存中，只有索引占用堆内存。
+     * 与CACHE_FLAG_MEMORY、CACHE_FLAG_WRITE_BACK、CACHE_FLAG_WRITE_THROUGH或CACHE_FLAG_PROPERTY组合使用
+     */
+    public static final int CACHE_FLAG_OFF_HEAP = 0x100000;
 
     /**
      * 默认缓存大小
@@ -68,10 +90,40 @@ public class CacheCenter {
     public static final int DEFAULT_MAX_MEMORY_COUNT = Integer.MAX_VALUE; // 默认不使用
     public static final long DEFAULT_MAX_FILE_SIZE = 1024 * 1024 * 128; // 128 mb
     public static final int DEFAULT_MAX_FILE_COUNT = Integer.MAX_VALUE; // 默认不使用
+    public static final int DEFAULT_CONCURRENCY_LEVEL = 1; // 默认不分段
+
+    // =======================================
+    // ============ File Engines =============
+    // =======================================
+    /**
+     * 每个缓存数据保存为一个文件
+     */
+    public static final int FILE_ENGINE_FILE_PER_ENTRY = 0;
+    /**
+     * 所有缓存数据追加写入日志分段文件，适合大量小数据
+     */
+    public static final int FILE_ENGINE_LOG_STRUCTURED = 1;
+
+    // =======================================
+    // ============ Fsync Policies ===========
+    // =======================================
+    /**
+     * 写入文件后不主动同步，由系统决定何时写入存储设备
+     */
+    public static final int FSYNC_NONE = 0;
+    /**
+     * 每次写入文件后同步到存储设备，掉电不会丢失已写入的数据
+     */
+    public static final int FSYNC_ALWAYS = 1;
 
     private static final ConcurrentMap<Integer, CacheDomain> _cacheDomains =
             new ConcurrentHashMap<Integer, CacheDomain>();
 
+    /**
+     * 全局事件监听，写时复制，由各缓存域在分发事件时读取
+     */
+    static volatile CacheEventListener[] _globalEventListeners = CacheDomain.EMPTY_LISTENERS;
+
     private static int _revision = 0;
     private static String _version = "all";
 
@@ -108,6 +160,42 @@ public class CacheCenter {
         }
     }
 
+    /**
+     * 注册全局事件监听，接收所有缓存域的事件
+     */
+    public static synchronized void addEventListener(CacheEventListener listener) {
+        _globalEventListeners = CacheDomain.addListener(_globalEventListeners, listener);
+    }
+
+    /**
+     * 移除全局事件监听
+     */
+    public static synchronized void removeEventListener(CacheEventListener listener) {
+        _globalEventListeners = CacheDomain.removeListener(_globalEventListeners, listener);
+    }
+
+    /**
+     * 获取所有缓存域统计数据的汇总
+     */
+    public static CacheStats getStats() {
+        CacheStats stats = CacheStats.EMPTY;
+        for (CacheDomain domain : _cacheDomains.values()) {
+            stats = stats.plus(domain.getStats());
+        }
+        return stats;
+    }
+
+    /**
+     * 获取每个缓存域的统计数据，key为缓存域id
+     */
+    public static Map<Integer, CacheStats> getStatsByDomain() {
+        Map<Integer, CacheStats> stats = new HashMap<Integer, CacheStats>();
+        for (CacheDomain domain : _cacheDomains.values()) {
+            stats.put(domain.getDomainId(), domain.getStats());
+        }
+        return stats;
+    }
+
     /**
      * 创建cache domain
      *
@@ -156,6 +244,22 @@ public class CacheCenter {
         private long _maxFileSize;
         private int _maxFileCount;
         private long _lifeTime;
+        private int _concurrencyLevel;
+        private int _fileEngine;
+        private int _fsyncPolicy;
+        private int[] _recycleStrategies;
+        private ArrayList<RecycleStrategy.Factory> _customRecycleStrategies;
+        private Weigher _weigher;
+        private BitmapPool _bitmapPool;
+        private long _flushInterval;
+        private long _maxDirtyBytes;
+        private int _promotionPolicy;
+        private long _maxPromotionSize;
+        private long _negativeLifeTime;
+        private Executor _loaderExecutor;
+        private long _staleTime;
+        private float _refreshAheadRatio;
+        private CacheLoader _refreshLoader;
 
         private CacheDomainBuilder(Context context, int domainId) {
             _context = context;
@@ -174,6 +278,22 @@ public class CacheCenter {
             _maxMemoryCount = DEFAULT_MAX_MEMORY_COUNT;
             _maxFileSize = DEFAULT_MAX_FILE_SIZE;
             _maxFileCount = DEFAULT_MAX_FILE_COUNT;
+            _concurrencyLevel = DEFAULT_CONCURRENCY_LEVEL;
+            _fileEngine = FILE_ENGINE_FILE_PER_ENTRY;
+            _fsyncPolicy = FSYNC_NONE;
+            _recycleStrategies = null;
+            _customRecycleStrategies = null;
+            _weigher = null;
+            _bitmapPool = null;
+            _flushInterval = -1;
+            _maxDirtyBytes = WriteBackCacheDomain.DEFAULT_MAX_DIRTY_BYTES;
+            _promotionPolicy = WriteBackCacheDomain.PROMOTE_NEVER;
+            _maxPromotionSize = -1;
+            _negativeLifeTime = 0;
+            _loaderExecutor = null;
+            _staleTime = 0;
+            _refreshAheadRatio = 0;
+            _refreshLoader = null;
             return this;
         }
 
@@ -207,7 +327,171 @@ public class CacheCenter {
             return this;
         }
 
+        /**
+         * 设置缓存分段数量，每个分段独立计数和回收，多线程写入时互不竞争
+         * 每个分段的容量为总容量的1/concurrencyLevel。超过分段容量的单个数据（如大图片）
+         * 借用其他分段的容量，写入时从占用最多的分段回收，单个数据不能超过总容量
+         *
+         * @param concurrencyLevel 分段数量，会调整为不超过64的2的幂
+         */
+        public CacheDomainBuilder setConcurrencyLevel(int concurrencyLevel) {
+            _concurrencyLevel = concurrencyLevel;
+            return this;
+        }
+
+        /**
+         * 设置文件缓存的存储引擎
+         *
+         * @param fileEngine {@link #FILE_ENGINE_FILE_PER_ENTRY}或{@link #FILE_ENGINE_LOG_STRUCTURED}
+         */
+        public CacheDomainBuilder setFileEngine(int fileEngine) {
+            _fileEngine = fileEngine;
+            return this;
+        }
+
+        /**
+         * 设置文件缓存写入数据时的同步策略
+         *
+         * @param fsyncPolicy {@link #FSYNC_NONE}或{@link #FSYNC_ALWAYS}
+         */
+        public CacheDomainBuilder setFsyncPolicy(int fsyncPolicy) {
+            _fsyncPolicy = fsyncPolicy;
+            return this;
+        }
+
+        /**
+         * 设置内存缓存计算数据大小的方式，未设置时使用{@link DefaultWeigher}，
+         * 文件缓存始终按文件长度计算
+         */
+        public CacheDomainBuilder setWeigher(Weigher weigher) {
+            _weigher = weigher;
+            return this;
+        }
+
+        /**
+         * 设置读取Bitmap时复用的Bitmap池，多个缓存域可以共用同一个池
+         */
+        public CacheDomainBuilder setBitmapPool(BitmapPool bitmapPool) {
+            _bitmapPool = bitmapPool;
+            return this;
+        }
+
+        /**
+         * 设置写回缓存（{@link #CACHE_FLAG_WRITE_BACK}、{@link #CACHE_FLAG_PROPERTY}）写入文件缓存的间隔，
+         * 不设置时使用各缓存域的默认值
+         */
+        public CacheDomainBuilder setFlushInterval(long flushInterval) {
+            _flushInterval = flushInterval;
+            return this;
+        }
+
+        /**
+         * 设置写回缓存待写数据的大小上限，达到上限时立即写入文件缓存
+         */
+        public CacheDomainBuilder setMaxDirtyBytes(long maxDirtyBytes) {
+            _maxDirtyBytes = maxDirtyBytes;
+            return this;
+        }
+
+        /**
+         * 设置写回缓存在文件缓存命中时是否将数据读入内存缓存，默认不读入。
+         * 读入后{@link CacheDomain#get(String)}返回byte[]而不是文件
+         *
+         * @param promotionPolicy {@link WriteBackCacheDomain#PROMOTE_NEVER}、
+         *                        {@link WriteBackCacheDomain#PROMOTE_ALWAYS}或
+         *                        {@link WriteBackCacheDomain#PROMOTE_SECOND_HIT}
+         */
+        public CacheDomainBuilder setPromotionPolicy(int promotionPolicy) {
+            _promotionPolicy = promotionPolicy;
+            return this;
+        }
+
+        /**
+         * 设置写回缓存读入内存缓存的数据大小上限，默认为内存缓存容量的1/8
+         */
+        public CacheDomainBuilder setMaxPromotionSize(long maxPromotionSize) {
+            _maxPromotionSize = maxPromotionSize;
+            return this;
+        }
+
+        /**
+         * 设置通过{@link CacheLoader}加载时未命中结果的保存时间，默认不保存
+         */
+        public CacheDomainBuilder setNegativeLifeTime(long ms) {
+            _negativeLifeTime = ms;
+            return this;
+        }
+
+        /**
+         * 设置异步加载使用的线程池，未设置时使用所有缓存域共用的默认线程池
+         */
+        public CacheDomainBuilder setLoaderExecutor(Executor loaderExecutor) {
+            _loaderExecutor = loaderExecutor;
+            return this;
+        }
+
+        /**
+         * 设置数据过期后仍可继续使用的时间，期间读取返回旧数据并在后台重新加载
+         *
+         * @see CacheDomain#setStaleTime(long)
+         */
+        public CacheDomainBuilder setStaleTime(long ms) {
+            _staleTime = ms;
+            return this;
+        }
+
+        /**
+         * 设置提前加载的时间比例，数据写入后经过保存时间的该比例时在后台重新加载
+         *
+         * @see CacheDomain#setRefreshAheadRatio(float)
+         */
+        public CacheDomainBuilder setRefreshAheadRatio(float ratio) {
+            _refreshAheadRatio = ratio;
+            return this;
+        }
+
+        /**
+         * 设置提前加载和过期数据重新加载使用的loader
+         */
+        public CacheDomainBuilder setRefreshLoader(CacheLoader refreshLoader) {
+            _refreshLoader = refreshLoader;
+            return this;
+        }
+
+        /**
+         * 设置回收策略，未设置时根据domain flags选择默认策略
+         *
+         * @param strategies {@link com.github.xulcache.cacherecycle.CacheRecycle}中定义的回收策略
+         */
+        public CacheDomainBuilder setRecycleStrategy(int... strategies) {
+            _recycleStrategies = strategies;
+            return this;
+        }
+
+        /**
+         * 添加自定义回收策略，回收时排在内置策略之后
+         */
+        public CacheDomainBuilder addRecycleStrategy(RecycleStrategy.Factory factory) {
+            if (_customRecycleStrategies == null) {
+                _customRecycleStrategies = new ArrayList<RecycleStrategy.Factory>();
+            }
+            _customRecycleStrategies.add(factory);
+            return this;
+        }
+
         public synchronized CacheDomain build() {
+            return build(false);
+        }
+
+        /**
+         * 创建cache domain，已有数据的索引在后台线程加载，返回的domain可以立即读写，
+         * 加载完成前读取尚未加载的数据时直接查找缓存文件，可通过{@link CacheDomain#awaitReady()}等待加载完成
+         */
+        public synchronized CacheDomain buildAsync() {
+            return build(true);
+        }
+
+        private CacheDomain build(boolean loadAsync) {
             CacheDomain cachedDomain = _cacheDomains.get(_domainId);
             if (cachedDomain != null) {
                 if (_domainFlags == cachedDomain.getDomainFlags()
@@ -227,37 +511,111 @@ public class CacheCenter {
             }
 
             CacheDomain domain;
-            switch (_domainFlags & ~0xFF) {
+            switch (_domainFlags & ~0xFF & ~CACHE_FLAG_OFF_HEAP) {
                 case CACHE_FLAG_PROPERTY:
                     domain = new PropertyCacheDomain(
-                            _maxMemorySize, _maxMemoryCount, cacheDir, _maxFileSize, _maxFileCount);
+                            newMemoryCache(_maxMemorySize, _maxMemoryCount),
+                            newFileCache(cacheDir, _maxFileSize, _maxFileCount, loadAsync));
                     break;
                 case CACHE_FLAG_MEMORY:
-                    domain = new MemoryCacheDomain(_maxMemorySize, _maxMemoryCount);
+                    domain = newMemoryCacheDomain();
                     break;
                 case CACHE_FLAG_FILE:
-                    domain = new FileCacheDomain(cacheDir, _maxFileSize, _maxFileCount);
+                    CacheImpl fileDomain;
+                    if (_fileEngine == FILE_ENGINE_LOG_STRUCTURED) {
+                        fileDomain = new LogFileCacheDomain(
+                                cacheDir, _maxFileSize, _maxFileCount, _concurrencyLevel);
+                    } else {
+                        fileDomain = new FileCacheDomain(cacheDir, _maxFileSize, _maxFileCount,
+                                _concurrencyLevel, loadAsync);
+                    }
+                    fileDomain.setFsyncPolicy(_fsyncPolicy);
+                    domain = fileDomain;
                     break;
                 case CACHE_FLAG_WRITE_BACK:
                     domain = new WriteBackCacheDomain(
-                            _maxMemorySize, _maxMemoryCount, cacheDir, _maxFileSize, _maxFileCount);
+                            newMemoryCache(_maxMemorySize, _maxMemoryCount),
+                            newFileCache(cacheDir, _maxFileSize, _maxFileCount, loadAsync));
                     break;
                 case CACHE_FLAG_WRITE_THROUGH:
+                    // 同时写入内存和文件，取最小的大小限制和数量限制
+                    long minSize = Math.min(_maxMemorySize, _maxFileSize);
+                    int minCount = Math.min(_maxMemoryCount, _maxFileCount);
                     domain = new WriteThroughCacheDomain(
-                            _maxMemorySize, _maxMemoryCount, cacheDir, _maxFileSize, _maxFileCount);
+                            newMemoryCache(minSize, minCount),
+                            newFileCache(cacheDir, minSize, minCount, loadAsync));
                     break;
                 default:
-                    domain = new MemoryCacheDomain(_maxMemorySize, _maxMemoryCount);
+                    domain = newMemoryCacheDomain();
                     break;
             }
 
             domain.setDomainId(_domainId);
             domain.setDomainFlags(_domainFlags);
             domain.setLifeTime(_lifeTime);
+            domain.setStaleTime(_staleTime);
+            domain.setRefreshAheadRatio(_refreshAheadRatio);
+            domain.setRefreshLoader(_refreshLoader);
+            domain.setBitmapPool(_bitmapPool);
+            domain.setNegativeLifeTime(_negativeLifeTime);
+            domain.setLoaderExecutor(_loaderExecutor);
+            if (domain instanceof WriteBackCacheDomain) {
+                if (_flushInterval >= 0) {
+                    ((WriteBackCacheDomain) domain).setFlushInterval(_flushInterval);
+                }
+                ((WriteBackCacheDomain) domain).setMaxDirtyBytes(_maxDirtyBytes);
+                ((WriteBackCacheDomain) domain).setPromotionPolicy(_promotionPolicy);
+                ((WriteBackCacheDomain) domain).setMaxPromotionSize(_maxPromotionSize);
+            }
+            if (_recycleStrategies != null) {
+                domain.setRecycleStrategy(_recycleStrategies);
+            }
+            if (_customRecycleStrategies != null) {
+                for (RecycleStrategy.Factory factory : _customRecycleStrategies) {
+                    domain.addRecycleStrategy(factory);
+                }
+            }
             _cacheDomains.put(_domainId, domain);
             return domain;
         }
 
+        private CacheImpl newMemoryCache(long maxSize, int maxCount) {
+            MemoryCache memoryCache;
+            if ((_domainFlags & CACHE_FLAG_OFF_HEAP) != 0) {
+                memoryCache = new OffHeapMemoryCache(maxSize, maxCount, _concurrencyLevel);
+            } else {
+                memoryCache = new MemoryCache(maxSize, maxCount, _concurrencyLevel);
+            }
+            memoryCache.setWeigher(_weigher);
+            return memoryCache;
+        }
+
+        private CacheImpl newMemoryCacheDomain() {
+            MemoryCache memoryDomain;
+            if ((_domainFlags & CACHE_FLAG_OFF_HEAP) != 0) {
+                memoryDomain = new OffHeapMemoryCacheDomain(
+                        _maxMemorySize, _maxMemoryCount, _concurrencyLevel);
+            } else {
+                memoryDomain = new MemoryCacheDomain(
+                        _maxMemorySize, _maxMemoryCount, _concurrencyLevel);
+            }
+            memoryDomain.setWeigher(_weigher);
+            return memoryDomain;
+        }
+
+        private CacheImpl newFileCache(File cacheDir, long maxSize, int maxCount,
+                                       boolean loadAsync) {
+            CacheImpl fileCache;
+            if (_fileEngine == FILE_ENGINE_LOG_STRUCTURED) {
+                // 日志分段顺序读取即可恢复索引，始终同步加载
+                fileCache = new LogFileCache(cacheDir, maxSize, maxCount, _concurrencyLevel);
+            } else {
+                fileCache = new FileCache(cacheDir, maxSize, maxCount, _concurrencyLevel, loadAsync);
+            }
+            fileCache.setFsyncPolicy(_fsyncPolicy);
+            return fileCache;
+        }
+
         private File getCacheDir() {
             String rootCacheDir = SystemUtil.getDiskCacheDir(_context);
             if (TextUtils.isEmpty(rootCacheDir)) {
@@ -4,13 +4,38 @@ import android.graphics.Bitmap;
 import android.graphics.drawable.Drawable;
 
 import com.github.xulcache.cacherecycle.CacheRecycle;
+import com.github.xulcache.cacherecycle.RecycleStrategy;
+import com.github.xulcache.event.CacheEventListener;
+import com.github.xulcache.stats.CacheStats;
+import com.github.xulcache.stats.StatsCounter;
+import com.github.xulcache.utils.BitmapPool;
 import com.github.xulcache.utils.Md5Utils;
+import com.github.xulcache.utils.XulBitmapUtil;
 
 import org.json.JSONArray;
 import org.json.JSONObject;
 
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public abstract class CacheDomain {
 
@@ -31,6 +56,21 @@ public abstract class CacheDomain {
 	 */
 	protected long _lifeTime = 0;
 
+	/**
+	 * 数据过期后仍可继续使用的时间，以毫秒为单位，期间读取返回旧数据并重新加载
+	 */
+	protected volatile long _staleTime = 0;
+
+	/**
+	 * 数据写入后经过保存时间的该比例时，读取返回当前数据并在后台重新加载，0代表不提前加载
+	 */
+	private volatile float _refreshAheadRatio = 0;
+
+	/**
+	 * 重新加载数据使用的loader
+	 */
+	private volatile CacheLoader _refreshLoader;
+
 	public int getDomainId() {
 		return _domainId;
 	}
@@ -65,8 +105,101 @@ public abstract class CacheDomain {
 		_lifeTime = ms;
 	}
 
+	/**
+	 * 设置数据过期后仍可继续使用的时间，期间读取返回旧数据并通过{@link #setRefreshLoader}设置的loader
+	 * 在后台重新加载，超出后数据才被移除。没有设置loader时旧数据一直使用到超出该时间
+	 */
+	public void setStaleTime(long ms) {
+		_staleTime = ms;
+	}
+
+	public long getStaleTime() {
+		return _staleTime;
+	}
+
+	/**
+	 * 设置提前加载的时间比例，数据写入后经过保存时间的该比例时，读取返回当前数据并在后台重新加载
+	 *
+	 * @param ratio 0到1之间，0代表不提前加载
+	 */
+	public void setRefreshAheadRatio(float ratio) {
+		_refreshAheadRatio = ratio;
+	}
+
+	public float getRefreshAheadRatio() {
+		return _refreshAheadRatio;
+	}
+
+	/**
+	 * 设置提前加载和过期数据重新加载使用的loader，为null时不重新加载
+	 */
+	public void setRefreshLoader(CacheLoader loader) {
+		_refreshLoader = loader;
+	}
+
+	public CacheLoader getRefreshLoader() {
+		return _refreshLoader;
+	}
+
 	protected final CacheRecycle _recycler = new CacheRecycle(this);
 
+	/**
+	 * 统计计数，多级缓存域中各级缓存分别统计
+	 */
+	protected final StatsCounter _stats = new StatsCounter();
+
+	static final CacheEventListener[] EMPTY_LISTENERS = new CacheEventListener[0];
+
+	private static final Runnable EMPTY_RUNNABLE = new Runnable() {
+		@Override
+		public void run() {
+		}
+	};
+
+	/**
+	 * 事件监听列表，写时复制，分发事件时不需要加锁和创建迭代器
+	 */
+	private volatile CacheEventListener[] _eventListeners = EMPTY_LISTENERS;
+
+	/**
+	 * 解码Bitmap时复用的Bitmap池，为null时不复用
+	 */
+	protected volatile BitmapPool _bitmapPool;
+
+	/**
+	 * 最多保存的未命中结果数量
+	 */
+	private static final int MAX_NEGATIVE_CACHES = 1024;
+
+	/**
+	 * 默认的加载线程数量
+	 */
+	private static final int DEFAULT_LOADER_THREADS = 4;
+
+	/**
+	 * 未设置加载线程池的缓存域共用的加载线程池，首次异步加载时创建
+	 */
+	private static volatile ThreadPoolExecutor _defaultLoaderExecutor;
+
+	/**
+	 * 正在加载的数据，同一个key同时只有一个加载过程
+	 */
+	private final ConcurrentHashMap<String, LoadTask> _loadingTasks =
+		new ConcurrentHashMap<String, LoadTask>();
+
+	/**
+	 * 加载结果为null的key及其失效时间
+	 */
+	private final ConcurrentHashMap<String, Long> _negativeCaches =
+		new ConcurrentHashMap<String, Long>();
+
+	/**
+	 * 未命中结果的保存时间，以毫秒为单位，0代表不保存
+	 */
+	private volatile long _negativeLifeTime = 0;
+
+	private volatile Executor _loaderExecutor;
+
 	// =======================================
 	// ============ 通用数据 读写 ==============
 	// =======================================
@@ -78,11 +211,23 @@ public abstract class CacheDomain {
 	 * @param value 保存的数据
 	 */
 	public <T> void put(String key, T value) {
-		putCache(new CacheModel(com.github.xulcache.utils.Md5Utils.calMD5(key), value));
+		long start = System.nanoTime();
+		CacheModel cache = new CacheModel(toCacheKey(key), value);
+		if (!_negativeCaches.isEmpty()) {
+			_negativeCaches.remove(cache.getKey());
+		}
+		boolean isPut = putCache(cache);
+		_stats.recordPutLatency(System.nanoTime() - start);
+		if (isPut && hasEventListeners()) {
+			dispatchPut(cache);
+		}
 	}
 
 	/**
 	 * 读取 Cache数据
+	 * 返回的类型取决于数据所在的缓存：文件缓存中的数据返回文件，写回缓存从文件缓存读入内存的数据返回byte[]
+	 * （见{@link com.github.xulcache.cachedomain.WriteBackCacheDomain#setPromotionPolicy(int)}），
+	 * 需要固定类型时使用getAsString、getAsBinary等方法读取
 	 *
 	 * @return cache 数据
 	 */
@@ -91,6 +236,193 @@ public abstract class CacheDomain {
 		if (cache == null) {
 			return null;
 		}
+		return getValue(cache);
+	}
+
+	/**
+	 * 读取 Cache数据，未命中时使用loader加载并写入缓存。
+	 * 同一个key的并发读取只加载一次，其他线程等待加载结果
+	 *
+	 * @return 命中时与{@link #get(String)}相同；未命中时返回加载的数据，数据不存在或加载失败时返回null
+	 */
+	public Object get(String key, CacheLoader loader) {
+		String cacheKey = toCacheKey(key);
+		CacheModel cache = internalGetCache(key, cacheKey, true);
+		if (cache != null) {
+			return getValue(cache);
+		}
+		if (isNegativeCached(cacheKey)) {
+			return null;
+		}
+
+		LoadTask task = new LoadTask(key, cacheKey, loader, false);
+		LoadTask loadingTask = _loadingTasks.putIfAbsent(cacheKey, task);
+		if (loadingTask == null) {
+			task.run();
+			loadingTask = task;
+		}
+		try {
+			return loadingTask.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		} catch (ExecutionException e) {
+			e.getCause().printStackTrace();
+			return null;
+		}
+	}
+
+	/**
+	 * 异步读取 Cache数据，未命中时在加载线程池中使用loader加载并写入缓存，
+	 * 同一个key的并发读取共用同一个加载结果
+	 *
+	 * @return 读取结果，加载失败时{@link Future#get()}抛出包含加载异常的ExecutionException
+	 * @see #setLoaderExecutor(Executor)
+	 */
+	public Future<Object> getAsync(String key, CacheLoader loader) {
+		String cacheKey = toCacheKey(key);
+		CacheModel cache = internalGetCache(key, cacheKey, true);
+		if (cache != null || isNegativeCached(cacheKey)) {
+			FutureTask<Object> done = new FutureTask<Object>(
+				EMPTY_RUNNABLE, cache == null ? null : getValue(cache));
+			done.run();
+			return done;
+		}
+
+		LoadTask task = new LoadTask(key, cacheKey, loader, false);
+		LoadTask loadingTask = _loadingTasks.putIfAbsent(cacheKey, task);
+		if (loadingTask != null) {
+			return loadingTask;
+		}
+		try {
+			getLoaderExecutor().execute(task);
+		} catch (RejectedExecutionException e) {
+			// 线程池已关闭，在当前线程加载
+			task.run();
+		}
+		return task;
+	}
+
+	private Object getValue(CacheModel cache) {
+		CacheDomain owner = cache.getOwner();
+		if (owner == null) {
+			return cache.getData();
+		}
+		return owner.getData(cache);
+	}
+
+	/**
+	 * 设置未命中结果（加载结果为null）的保存时间，保存时间内读取同一个key不再加载
+	 *
+	 * @param ms 以毫秒为单位，0代表不保存
+	 */
+	public void setNegativeLifeTime(long ms) {
+		_negativeLifeTime = ms;
+		if (ms <= 0) {
+			_negativeCaches.clear();
+		}
+	}
+
+	public long getNegativeLifeTime() {
+		return _negativeLifeTime;
+	}
+
+	/**
+	 * 设置异步加载使用的线程池，为null时使用所有缓存域共用的默认线程池
+	 */
+	public void setLoaderExecutor(Executor executor) {
+		_loaderExecutor = executor;
+	}
+
+	public Executor getLoaderExecutor() {
+		Executor executor = _loaderExecutor;
+		return executor != null ? executor : defaultLoaderExecutor();
+	}
+
+	private static Executor defaultLoaderExecutor() {
+		ThreadPoolExecutor executor = _defaultLoaderExecutor;
+		if (executor != null) {
+			return executor;
+		}
+		synchronized (CacheDomain.class) {
+			if (_defaultLoaderExecutor == null) {
+				final AtomicInteger threadCount = new AtomicInteger();
+				executor = new ThreadPoolExecutor(DEFAULT_LOADER_THREADS, DEFAULT_LOADER_THREADS,
+					30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+					@Override
+					public Thread newThread(Runnable r) {
+						Thread thread = new Thread(r, "CacheLoader-" + threadCount.incrementAndGet());
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+				// 空闲时不保留线程
+				executor.allowCoreThreadTimeOut(true);
+				_defaultLoaderExecutor = executor;
+			}
+			return _defaultLoaderExecutor;
+		}
+	}
+
+	private boolean isNegativeCached(String cacheKey) {
+		if (_negativeCaches.isEmpty()) {
+			return false;
+		}
+		Long expireTime = _negativeCaches.get(cacheKey);
+		if (expireTime == null) {
+			return false;
+		}
+		if (System.currentTimeMillis() < expireTime) {
+			return true;
+		}
+		_negativeCaches.remove(cacheKey, expireTime);
+		return false;
+	}
+
+	private void putNegativeCache(String cacheKey) {
+		long negativeLifeTime = _negativeLifeTime;
+		if (negativeLifeTime <= 0) {
+			return;
+		}
+		long now = System.currentTimeMillis();
+		if (_negativeCaches.size() >= MAX_NEGATIVE_CACHES) {
+			// 先清理已失效的结果，仍然超出时全部丢弃，未命中结果只用于减少重复加载
+			for (Map.Entry<String, Long> entry : _negativeCaches.entrySet()) {
+				if (now >= entry.getValue()) {
+					_negativeCaches.remove(entry.getKey(), entry.getValue());
+				}
+			}
+			if (_negativeCaches.size() >= MAX_NEGATIVE_CACHES) {
+				_negativeCaches.clear();
+			}
+		}
+		_negativeCaches.put(cacheKey, now + negativeLifeTime);
+	}
+
+	/**
+	 * 读取命中时检查是否需要重新加载，需要时在加载线程池中加载，同一个key同时只有一个加载过程
+	 */
+	private void checkRefresh(String key, String cacheKey, CacheModel cache) {
+		CacheLoader loader = _refreshLoader;
+		if (loader == null || !needsRefresh(cache) || _loadingTasks.containsKey(cacheKey)) {
+			return;
+		}
+		LoadTask task = new LoadTask(key, cacheKey, loader, true);
+		if (_loadingTasks.putIfAbsent(cacheKey, task) != null) {
+			return;
+		}
+		try {
+			getLoaderExecutor().execute(task);
+		} catch (RejectedExecutionException e) {
+			// 不在读取的线程中加载，下次读取时重试
+			_loadingTasks.remove(cacheKey, task);
+		}
+	}
+
+	/**
+	 * 获取缓存中保存的数据对象，数据不保存在堆内存中的缓存实现返回复制出的数据
+	 */
+	protected Object getData(CacheModel cache) {
 		return cache.getData();
 	}
 
@@ -101,7 +433,7 @@ public abstract class CacheDomain {
 	 * @return 包含返回true，否则返回false
 	 */
 	public boolean contains(String key) {
-		return getCache(Md5Utils.calMD5(key), false) != null;
+		return getCache(toCacheKey(key), false) != null;
 	}
 
 	protected abstract CacheModel getCache(String key, boolean update);
@@ -111,7 +443,45 @@ public abstract class CacheDomain {
 	}
 
 	protected CacheModel internalGetCache(String key, boolean update) {
-		return getCache(Md5Utils.calMD5(key), update);
+		return internalGetCache(key, toCacheKey(key), update);
+	}
+
+	private CacheModel internalGetCache(String key, String cacheKey, boolean update) {
+		long start = System.nanoTime();
+		CacheModel cache = getCache(cacheKey, update);
+		_stats.recordGetLatency(System.nanoTime() - start);
+		if (cache != null && update) {
+			checkRefresh(key, cacheKey, cache);
+		}
+		if (cache == null) {
+			_stats.recordMiss();
+		} else {
+			_stats.recordHit();
+		}
+		if (hasEventListeners()) {
+			if (cache == null) {
+				dispatchGetMiss(key);
+			} else {
+				dispatchGetHit(key, cache);
+			}
+		}
+		return cache;
+	}
+
+	/**
+	 * 将外部传入的key转换为缓存内部使用的key，默认使用md5，保证可以作为文件名
+	 */
+	protected String toCacheKey(String key) {
+		return Md5Utils.calMD5(key);
+	}
+
+	/**
+	 * 批量转换key，与{@link #toCacheKey(String)}的结果一致，重写toCacheKey时需同时重写
+	 *
+	 * @return 与keys顺序一致的结果
+	 */
+	protected String[] toCacheKeys(Collection<String> keys) {
+		return Md5Utils.calMD5(keys);
 	}
 
 	// =======================================
@@ -215,6 +585,33 @@ public abstract class CacheDomain {
 		return owner.getAsBinary(cacheModel);
 	}
 
+	/**
+	 * 获取 ByteBuffer 数据，文件缓存中较大的数据使用内存映射，不复制到堆内存中
+	 *
+	 * @param key
+	 * @return 只读的 ByteBuffer 数据
+	 */
+	public ByteBuffer getAsByteBuffer(String key) {
+		CacheModel cacheModel = internalGetCache(key);
+		if (cacheModel == null) {
+			return null;
+		}
+		return getAsByteBuffer(cacheModel);
+	}
+
+	public ByteBuffer getAsByteBuffer(CacheModel cacheModel) {
+		CacheDomain owner = cacheModel.getOwner();
+		if (owner == null) {
+			return null;
+		}
+		if (owner != this) {
+			return owner.getAsByteBuffer(cacheModel);
+		}
+		// 未提供直接读取方式的缓存实现，包装 byte 数据
+		byte[] data = getAsBinary(cacheModel);
+		return data == null ? null : ByteBuffer.wrap(data).asReadOnlyBuffer();
+	}
+
 	public InputStream getAsStream(String key) {
 		CacheModel cacheModel = internalGetCache(key);
 		if (cacheModel == null) {
@@ -279,6 +676,34 @@ public abstract class CacheDomain {
 		return owner.getAsBitmap(cacheModel);
 	}
 
+	/**
+	 * 读取 bitmap 数据，按需要的尺寸缩小解码（缩小倍数为2的幂，结果不小于需要的尺寸），
+	 * 设置了Bitmap池时解码复用池中的Bitmap
+	 *
+	 * @param reqWidth  需要的宽度，宽度或高度小于等于0时按原始尺寸解码
+	 * @param reqHeight 需要的高度
+	 * @return bitmap 数据
+	 */
+	public Bitmap getAsBitmap(String key, int reqWidth, int reqHeight) {
+		CacheModel cacheModel = internalGetCache(key);
+		if (cacheModel == null) {
+			return null;
+		}
+		return getAsBitmap(cacheModel, reqWidth, reqHeight);
+	}
+
+	public Bitmap getAsBitmap(CacheModel cacheModel, int reqWidth, int reqHeight) {
+		CacheDomain owner = cacheModel.getOwner();
+		if (owner == null) {
+			return null;
+		}
+		if (owner != this) {
+			return owner.getAsBitmap(cacheModel, reqWidth, reqHeight);
+		}
+		// 未提供解码方式的缓存实现（如内存缓存中保存的Bitmap），返回原始数据
+		return getAsBitmap(cacheModel);
+	}
+
 	// =======================================
 	// ============= drawable 数据 读写 =============
 	// =======================================
@@ -304,11 +729,28 @@ public abstract class CacheDomain {
 		return owner.getAsDrawable(cacheModel);
 	}
 
+	/**
+	 * 读取 Drawable 数据，按需要的尺寸缩小解码
+	 *
+	 * @see #getAsBitmap(String, int, int)
+	 */
+	public Drawable getAsDrawable(String key, int reqWidth, int reqHeight) {
+		CacheModel cacheModel = internalGetCache(key);
+		if (cacheModel == null) {
+			return null;
+		}
+		Object data = cacheModel.getData();
+		if (data instanceof Drawable) {
+			return (Drawable) data;
+		}
+		return XulBitmapUtil.bitmap2Drawable(getAsBitmap(cacheModel, reqWidth, reqHeight));
+	}
+
 	/**
 	 * 移除某个key所对应的cache
 	 */
 	public CacheModel remove(String key) {
-		CacheModel cache = removeCache(Md5Utils.calMD5(key));
+		CacheModel cache = removeCache(toCacheKey(key));
 		return cache;
 	}
 
@@ -319,6 +761,95 @@ public abstract class CacheDomain {
 		return removeCache(cache.getKey());
 	}
 
+	// =======================================
+	// ============= 批量 读写 ================
+	// =======================================
+
+	/**
+	 * 批量读取缓存数据，key统一转换后一次读取，文件缓存的访问记录合并写入
+	 *
+	 * @return 命中的key与数据，按keys的顺序排列，未命中的key不包含在结果中
+	 */
+	public Map<String, Object> getAll(Collection<String> keys) {
+		Map<String, Object> result = new LinkedHashMap<String, Object>(keys.size() * 4 / 3 + 1);
+		if (keys.isEmpty()) {
+			return result;
+		}
+		String[] cacheKeys = toCacheKeys(keys);
+		long start = System.nanoTime();
+		CacheModel[] caches = getCaches(cacheKeys, true);
+		long latency = (System.nanoTime() - start) / cacheKeys.length;
+		boolean hasListeners = hasEventListeners();
+		Iterator<String> keyIterator = keys.iterator();
+		for (CacheModel cache : caches) {
+			String key = keyIterator.next();
+			_stats.recordGetLatency(latency);
+			if (cache == null) {
+				_stats.recordMiss();
+				if (hasListeners) {
+					dispatchGetMiss(key);
+				}
+				continue;
+			}
+			_stats.recordHit();
+			if (hasListeners) {
+				dispatchGetHit(key, cache);
+			}
+			checkRefresh(key, cache.getKey(), cache);
+			Object data = getValue(cache);
+			if (data != null) {
+				result.put(key, data);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * 批量保存数据，按合计的大小一次回收空间，文件缓存的写入合并为一次日志追加和同步
+	 *
+	 * @return 保存成功的数量
+	 */
+	public int putAll(Map<String, ?> values) {
+		if (values.isEmpty()) {
+			return 0;
+		}
+		String[] cacheKeys = toCacheKeys(values.keySet());
+		List<CacheModel> caches = new ArrayList<CacheModel>(cacheKeys.length);
+		int i = 0;
+		for (Object value : values.values()) {
+			caches.add(new CacheModel(cacheKeys[i++], value));
+		}
+		if (!_negativeCaches.isEmpty()) {
+			for (String cacheKey : cacheKeys) {
+				_negativeCaches.remove(cacheKey);
+			}
+		}
+		long start = System.nanoTime();
+		List<CacheModel> stored = putCaches(caches);
+		long latency = (System.nanoTime() - start) / cacheKeys.length;
+		for (i = 0; i < cacheKeys.length; i++) {
+			_stats.recordPutLatency(latency);
+		}
+		if (hasEventListeners()) {
+			for (CacheModel cache : stored) {
+				dispatchPut(cache);
+			}
+		}
+		return stored.size();
+	}
+
+	/**
+	 * 批量移除数据，文件缓存的删除记录合并为一次日志追加
+	 *
+	 * @return 被移除的数据
+	 */
+	public List<CacheModel> removeAll(Collection<String> keys) {
+		if (keys.isEmpty()) {
+			return new ArrayList<CacheModel>(0);
+		}
+		return removeCaches(toCacheKeys(keys));
+	}
+
 	/**
 	 * 清除所有数据
 	 */
@@ -342,6 +873,93 @@ public abstract class CacheDomain {
 	public void close() {
 	}
 
+	/**
+	 * 缓存域是否已加载完成，后台加载的缓存域在加载完成前也可以读写，
+	 * 但统计数据（大小、数量等）不完整
+	 */
+	public boolean isReady() {
+		return true;
+	}
+
+	/**
+	 * 等待缓存域加载完成
+	 */
+	public void awaitReady() throws InterruptedException {
+	}
+
+	/**
+	 * 等待缓存域加载完成
+	 *
+	 * @return 超时返回false
+	 */
+	public boolean awaitReady(long timeout, TimeUnit unit) throws InterruptedException {
+		return true;
+	}
+
+	/**
+	 * 获取统计数据（命中、回收、磁盘读写、读写耗时等）的快照
+	 */
+	public CacheStats getStats() {
+		return _stats.snapshot();
+	}
+
+	/**
+	 * 清零统计数据
+	 */
+	public void resetStats() {
+		_stats.reset();
+	}
+
+	/**
+	 * 设置解码Bitmap时复用的Bitmap池，不再显示的Bitmap可以通过{@link BitmapPool#put(Bitmap)}放回池中
+	 */
+	public void setBitmapPool(BitmapPool pool) {
+		_bitmapPool = pool;
+	}
+
+	public BitmapPool getBitmapPool() {
+		return _bitmapPool;
+	}
+
+	/**
+	 * 注册事件监听
+	 */
+	public synchronized void addEventListener(CacheEventListener listener) {
+		_eventListeners = addListener(_eventListeners, listener);
+	}
+
+	/**
+	 * 移除事件监听
+	 */
+	public synchronized void removeEventListener(CacheEventListener listener) {
+		_eventListeners = removeListener(_eventListeners, listener);
+	}
+
+	static CacheEventListener[] addListener(CacheEventListener[] listeners,
+	                                        CacheEventListener listener) {
+		for (CacheEventListener l : listeners) {
+			if (l == listener) {
+				return listeners;
+			}
+		}
+		CacheEventListener[] newListeners = Arrays.copyOf(listeners, listeners.length + 1);
+		newListeners[listeners.length] = listener;
+		return newListeners;
+	}
+
+	static CacheEventListener[] removeListener(CacheEventListener[] listeners,
+	                                           CacheEventListener listener) {
+		for (int i = 0; i < listeners.length; i++) {
+			if (listeners[i] == listener) {
+				CacheEventListener[] newListeners = new CacheEventListener[listeners.length - 1];
+				System.arraycopy(listeners, 0, newListeners, 0, i);
+				System.arraycopy(listeners, i + 1, newListeners, i, listeners.length - i - 1);
+				return newListeners;
+			}
+		}
+		return listeners;
+	}
+
 	/**
 	 * 获取所有的缓存数据
 	 */
@@ -368,16 +986,51 @@ public abstract class CacheDomain {
 	public abstract int countCapacity();
 
 	/**
-	 * 判断缓存数据是否过期
+	 * 判断缓存数据是否过期，设置了过期后继续使用的时间时，超出该时间才算过期
 	 */
 	public boolean isExpired(CacheModel cache) {
 		if ((_lifeTime > 0) && (cache != null)) {
-			return System.currentTimeMillis() > _lifeTime + cache.getLastAccessTime();
+			return System.currentTimeMillis() > _lifeTime + _staleTime + cache.getLastAccessTime();
 		}
 
 		return false;
 	}
 
+	/**
+	 * 判断缓存数据是否已超过保存时间，但仍在过期后继续使用的时间内
+	 */
+	public boolean isStale(CacheModel cache) {
+		if (_lifeTime > 0 && _staleTime > 0 && cache != null) {
+			long age = System.currentTimeMillis() - cache.getLastAccessTime();
+			return age > _lifeTime && age <= _lifeTime + _staleTime;
+		}
+		return false;
+	}
+
+	/**
+	 * 判断是否需要在后台重新加载：数据已超过保存时间，或写入后已经过保存时间的提前加载比例
+	 */
+	protected boolean needsRefresh(CacheModel cache) {
+		if (_lifeTime <= 0) {
+			return false;
+		}
+		if (isStale(cache)) {
+			return true;
+		}
+		float ratio = _refreshAheadRatio;
+		return ratio > 0
+			&& System.currentTimeMillis() - cache.getCreateTime() > (long) (_lifeTime * ratio);
+	}
+
+	/**
+	 * 清除所有过期数据
+	 *
+	 * @return 被清除的数据数量
+	 */
+	public int purgeExpired() {
+		return 0;
+	}
+
 	public void setRecycleStrategy(int... strategies) {
 		_recycler.clear();
 		for (int strategy : strategies) {
@@ -385,6 +1038,15 @@ public abstract class CacheDomain {
 		}
 	}
 
+	/**
+	 * 添加自定义回收策略，回收时排在已有策略之后
+	 *
+	 * @param factory 回收策略工厂，多级缓存域的每一级缓存会各自创建一个策略实例
+	 */
+	public void addRecycleStrategy(RecycleStrategy.Factory factory) {
+		_recycler.addRecycleStrategy(factory.create(this));
+	}
+
 	// =======================================
 	// ============= 内部使用api ===============
 	// =======================================
@@ -394,6 +1056,50 @@ public abstract class CacheDomain {
 	 */
 	protected abstract boolean putCache(CacheModel cacheData);
 
+	/**
+	 * 批量读取缓存数据，默认逐个读取
+	 *
+	 * @return 与keys顺序一致的结果，未命中时为null
+	 */
+	protected CacheModel[] getCaches(String[] md5Keys, boolean update) {
+		CacheModel[] caches = new CacheModel[md5Keys.length];
+		for (int i = 0; i < md5Keys.length; i++) {
+			caches[i] = getCache(md5Keys[i], update);
+		}
+		return caches;
+	}
+
+	/**
+	 * 批量保存缓存数据，默认逐个保存
+	 *
+	 * @return 保存成功的数据
+	 */
+	protected List<CacheModel> putCaches(List<CacheModel> caches) {
+		List<CacheModel> stored = new ArrayList<CacheModel>(caches.size());
+		for (CacheModel cache : caches) {
+			if (putCache(cache)) {
+				stored.add(cache);
+			}
+		}
+		return stored;
+	}
+
+	/**
+	 * 批量移除缓存数据，默认逐个移除
+	 *
+	 * @return 被移除的数据
+	 */
+	protected List<CacheModel> removeCaches(String[] md5Keys) {
+		List<CacheModel> removed = new ArrayList<CacheModel>(md5Keys.length);
+		for (String md5Key : md5Keys) {
+			CacheModel cache = removeCache(md5Key);
+			if (cache != null) {
+				removed.add(cache);
+			}
+		}
+		return removed;
+	}
+
 	/**
 	 * 移除下一个cache数据
 	 */
@@ -403,4 +1109,112 @@ public abstract class CacheDomain {
 	 * 移除指定的cache数据
 	 */
 	protected abstract CacheModel removeCache(String md5Key);
+
+	// =======================================
+	// ============ 缓存事件分发 ===============
+	// =======================================
+
+	/**
+	 * 是否注册了事件监听（包括全局监听），没有监听时调用方不需要准备事件参数
+	 */
+	protected final boolean hasEventListeners() {
+		return _eventListeners.length != 0 || CacheCenter._globalEventListeners.length != 0;
+	}
+
+	protected void dispatchPut(CacheModel cache) {
+		for (CacheEventListener listener : _eventListeners) {
+			listener.onPut(this, cache);
+		}
+		for (CacheEventListener listener : CacheCenter._globalEventListeners) {
+			listener.onPut(this, cache);
+		}
+	}
+
+	protected void dispatchGetHit(String key, CacheModel cache) {
+		for (CacheEventListener listener : _eventListeners) {
+			listener.onGetHit(this, key, cache);
+		}
+		for (CacheEventListener listener : CacheCenter._globalEventListeners) {
+			listener.onGetHit(this, key, cache);
+		}
+	}
+
+	protected void dispatchGetMiss(String key) {
+		for (CacheEventListener listener : _eventListeners) {
+			listener.onGetMiss(this, key);
+		}
+		for (CacheEventListener listener : CacheCenter._globalEventListeners) {
+			listener.onGetMiss(this, key);
+		}
+	}
+
+	protected void dispatchEvict(CacheModel cache, int reason) {
+		for (CacheEventListener listener : _eventListeners) {
+			listener.onEvict(this, cache, reason);
+		}
+		for (CacheEventListener listener : CacheCenter._globalEventListeners) {
+			listener.onEvict(this, cache, reason);
+		}
+	}
+
+	protected void dispatchFileWrite(CacheModel cache, long bytes, long durationNanos) {
+		for (CacheEventListener listener : _eventListeners) {
+			listener.onFileWrite(this, cache, bytes, durationNanos);
+		}
+		for (CacheEventListener listener : CacheCenter._globalEventListeners) {
+			listener.onFileWrite(this, cache, bytes, durationNanos);
+		}
+	}
+
+	protected void dispatchWriteBackFlush(CacheModel cache) {
+		for (CacheEventListener listener : _eventListeners) {
+			listener.onWriteBackFlush(this, cache);
+		}
+		for (CacheEventListener listener : CacheCenter._globalEventListeners) {
+			listener.onWriteBackFlush(this, cache);
+		}
+	}
+
+	/**
+	 * 加载过程，加载完成后从正在加载的数据中移除，之后的读取直接从缓存读取
+	 */
+	private final class LoadTask extends FutureTask<Object> {
+		private final String _cacheKey;
+
+		/**
+		 * @param reload 重新加载已有的数据，为false时只在数据不存在时加载
+		 */
+		LoadTask(final String key, final String cacheKey, final CacheLoader loader,
+		         final boolean reload) {
+			super(new Callable<Object>() {
+				@Override
+				public Object call() throws Exception {
+					if (!reload) {
+						// 等待加载的过程中数据可能已被写入
+						CacheModel cache = getCache(cacheKey, false);
+						if (cache != null) {
+							return getValue(cache);
+						}
+					}
+					Object value = loader.load(key);
+					if (value == null) {
+						if (reload) {
+							// 数据已不存在
+							removeCache(cacheKey);
+						}
+						putNegativeCache(cacheKey);
+						return null;
+					}
+					put(key, value);
+					return value;
+				}
+			});
+			_cacheKey = cacheKey;
+		}
+
+		@Override
+		protected void done() {
+			_loadingTasks.remove(_cacheKey, this);
+		}
+	}
 }
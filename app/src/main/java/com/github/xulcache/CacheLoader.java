@@ -0,0 +1,19 @@
+package com.github.xulcache;
+
+/**
+ * 缓存未命中时加载数据，由{@link CacheDomain#get(String, CacheLoader)}和
+ * {@link CacheDomain#getAsync(String, CacheLoader)}调用。
+ * 同一个缓存域中同一个key同时只有一个加载过程，其他读取等待该过程的结果。
+ */
+public interface CacheLoader {
+
+	/**
+	 * 加载数据，在读取的线程或缓存域的加载线程池中执行，加载结果写入缓存。
+	 * 加载过程中不能通过loader读取同一个key，否则会等待自身的加载结果
+	 *
+	 * @param key 读取时使用的原始key
+	 * @return 数据不存在时返回null，缓存域设置了未命中结果的保存时间时在该时间内不再加载
+	 * @throws Exception 加载失败，结果不写入缓存，下次读取时重新加载
+	 */
+	Object load(String key) throws Exception;
+}
@@ -2,7 +2,7 @@ package com.github.xulcache;
 
 import android.text.TextUtils;
 
-import java.io.File;
+import com.github.xulcache.weigher.DefaultWeigher;
 
 public class CacheModel {
 	private CacheDomain _owner;
@@ -22,8 +22,21 @@ public class CacheModel {
 	 */
 	private long _lastAccessTime;
 
+	/**
+	 * 缓存数据写入时间，从已有数据加载时为记录的最后访问时间
+	 */
+	private long _createTime;
+
+	/**
+	 * 缓存数据大小，写入缓存时由缓存域的Weigher计算，替换数据时同步更新
+	 */
+	private volatile long _size = UNKNOWN_SIZE;
+
+	private static final long UNKNOWN_SIZE = -1;
+
 	public CacheModel() {
 		_lastAccessTime = System.currentTimeMillis();
+		_createTime = _lastAccessTime;
 	}
 
 	public CacheModel(String key, Object data) {
@@ -34,12 +47,15 @@ public class CacheModel {
 		_key = key;
 		_data = data;
 		_lastAccessTime = lastAccessTime;
+		_createTime = lastAccessTime;
 	}
 
 	public CacheModel(CacheModel other) {
 		_key = other._key;
 		_data = other._data;
 		_lastAccessTime = other._lastAccessTime;
+		_createTime = other._createTime;
+		_size = other._size;
 	}
 
 	/**
@@ -51,20 +67,23 @@ public class CacheModel {
 	}
 
 	/**
-	 * 以byte为单位返回缓存数据大小
+	 * 以byte为单位返回缓存数据大小，写入缓存后返回写入时计算的大小
 	 */
 	public long size() {
-		// 根据缓存数据实际类型计算其大小
-		if (_data instanceof String) {
-			return ((String) _data).getBytes().length;
-		} else if (_data instanceof byte[]) {
-			return ((byte[]) _data).length;
-		} else if (_data instanceof File) {
-			return ((File) _data).length();
-		} else {
-			// 无法计算或，默认返回0
-			return 0;
+		long size = _size;
+		if (size < 0) {
+			// 尚未写入缓存或数据已被替换，计算一次并保存
+			size = DefaultWeigher.INSTANCE.weigh(_data);
+			_size = size;
 		}
+		return size;
+	}
+
+	/**
+	 * 设置缓存数据大小，由缓存域在写入时调用
+	 */
+	public void setSize(long size) {
+		_size = size;
 	}
 
 	public String getKey() {
@@ -79,8 +98,20 @@ public class CacheModel {
 		return _data;
 	}
 
+	/**
+	 * 替换缓存数据，数据大小在下次调用{@link #size()}时重新计算
+	 */
 	public void setData(Object data) {
 		_data = data;
+		_size = UNKNOWN_SIZE;
+	}
+
+	/**
+	 * 替换缓存数据，使用已知的数据大小（如写入文件的字节数），避免重新计算
+	 */
+	public void setData(Object data, long size) {
+		_data = data;
+		_size = size;
 	}
 
 	public long getLastAccessTime() {
@@ -99,6 +130,10 @@ public class CacheModel {
 		_lastAccessTime = currentTime;
 	}
 
+	public long getCreateTime() {
+		return _createTime;
+	}
+
 	public void setOwner(CacheDomain owner) {
 		_owner = owner;
 	}
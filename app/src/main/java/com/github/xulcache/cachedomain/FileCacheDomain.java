@@ -1,5 +1,6 @@
 package com.github.xulcache.cachedomain;
 
+import com.github.xulcache.CacheCenter;
 import com.github.xulcache.cacheimplement.FileCache;
 
 import java.io.File;
@@ -7,6 +8,15 @@ import java.io.File;
 public class FileCacheDomain extends FileCache {
 
     public FileCacheDomain(File cacheDir, long maxSize, int maxCount) {
-        super(cacheDir, maxSize, maxCount);
+        this(cacheDir, maxSize, maxCount, CacheCenter.DEFAULT_CONCURRENCY_LEVEL);
+    }
+
+    public FileCacheDomain(File cacheDir, long maxSize, int maxCount, int concurrencyLevel) {
+        super(cacheDir, maxSize, maxCount, concurrencyLevel);
+    }
+
+    public FileCacheDomain(File cacheDir, long maxSize, int maxCount, int concurrencyLevel,
+                           boolean loadAsync) {
+        super(cacheDir, maxSize, maxCount, concurrencyLevel, loadAsync);
     }
 }
@@ -0,0 +1,17 @@
+package com.github.xulcache.cachedomain;
+
+import com.github.xulcache.CacheCenter;
+import com.github.xulcache.cacheimplement.LogFileCache;
+
+import java.io.File;
+
+public class LogFileCacheDomain extends LogFileCache {
+
+    public LogFileCacheDomain(File cacheDir, long maxSize, int maxCount) {
+        this(cacheDir, maxSize, maxCount, CacheCenter.DEFAULT_CONCURRENCY_LEVEL);
+    }
+
+    public LogFileCacheDomain(File cacheDir, long maxSize, int maxCount, int concurrencyLevel) {
+        super(cacheDir, maxSize, maxCount, concurrencyLevel);
+    }
+}
@@ -1,11 +1,15 @@
 package com.github.xulcache.cachedomain;
 
-
+import com.github.xulcache.CacheCenter;
 import com.github.xulcache.cacheimplement.MemoryCache;
 
 public class MemoryCacheDomain extends MemoryCache {
 
     public MemoryCacheDomain(long maxSize, int maxCount) {
-        super(maxSize, maxCount);
+        this(maxSize, maxCount, CacheCenter.DEFAULT_CONCURRENCY_LEVEL);
+    }
+
+    public MemoryCacheDomain(long maxSize, int maxCount, int concurrencyLevel) {
+        super(maxSize, maxCount, concurrencyLevel);
     }
 }
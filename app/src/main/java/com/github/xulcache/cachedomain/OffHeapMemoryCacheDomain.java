@@ -0,0 +1,15 @@
+package com.github.xulcache.cachedomain;
+
+import com.github.xulcache.CacheCenter;
+import com.github.xulcache.cacheimplement.OffHeapMemoryCache;
+
+public class OffHeapMemoryCacheDomain extends OffHeapMemoryCache {
+
+    public OffHeapMemoryCacheDomain(long maxSize, int maxCount) {
+        this(maxSize, maxCount, CacheCenter.DEFAULT_CONCURRENCY_LEVEL);
+    }
+
+    public OffHeapMemoryCacheDomain(long maxSize, int maxCount, int concurrencyLevel) {
+        super(maxSize, maxCount, concurrencyLevel);
+    }
+}
@@ -1,86 +1,119 @@
 package com.github.xulcache.cachedomain;
 
-import com.github.xulcache.CacheModel;
+import com.github.xulcache.CacheCenter;
+import com.github.xulcache.cacheimplement.CacheImpl;
+import com.github.xulcache.cacheimplement.FileCache;
+import com.github.xulcache.cacheimplement.MemoryCache;
 
 import java.io.File;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
+/**
+ * 属性缓存：数据变化后延迟一个写入间隔，将间隔内新写入和删除的数据合并写入文件缓存。
+ * 写入由所有属性缓存域共用的定时线程执行，没有待写数据时不占用线程
+ */
 public class PropertyCacheDomain extends WriteBackCacheDomain {
 
-    private final AtomicBoolean _isUpdated = new AtomicBoolean(false);
-    private final ThreadPoolExecutor _threadPoolExecutor;
-    private boolean isRuning = false;
+    /**
+     * 默认数据变化后写入文件缓存的延迟
+     */
+    public static final long DEFAULT_FLUSH_DELAY = 200;
 
-    private Runnable saveDataRunnable = new Runnable(){
+    /**
+     * 所有属性缓存域共用的写入线程，首次写入时创建，空闲时退出
+     */
+    private static volatile ScheduledThreadPoolExecutor _flushScheduler;
+
+    /**
+     * 已安排写入且尚未开始，期间的数据变化合并到这次写入
+     */
+    private final AtomicBoolean _flushScheduled = new AtomicBoolean(false);
+    private volatile ScheduledFuture<?> _flushFuture;
+
+    private final Runnable _flushRunnable = new Runnable() {
         @Override
         public void run() {
-            if(isRuning){
-                if (_isUpdated.getAndSet(false)) {
-                    // 更新过数据，需要写入文件缓存
-                    for (CacheModel cache : _memoryCache.getAllCaches()) {
-                        if (null ==_fileCache.getCache(cache.getKey(), false)) {
-                            _fileCache.putCache(cache);
-                        }
-                    }
-                }
-                try {
-                    Thread.sleep(200);
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
-                }
+            // 先清除标记，写入过程中变化的数据安排下一次写入
+            _flushScheduled.set(false);
+            if (!isClosed()) {
+                flush();
             }
         }
     };
 
     public PropertyCacheDomain(long maxSize, int maxCount,
                                File cacheDir, long maxFileSize, int maxFileCount) {
-        super(maxSize, maxCount, cacheDir, maxFileSize, maxFileCount);
+        this(maxSize, maxCount, cacheDir, maxFileSize, maxFileCount,
+             CacheCenter.DEFAULT_CONCURRENCY_LEVEL);
+    }
 
-        isRuning = true;
-        _threadPoolExecutor = new ThreadPoolExecutor(1,2,30 ,
-                TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
-        _threadPoolExecutor.execute(saveDataRunnable);
+    public PropertyCacheDomain(long maxSize, int maxCount, File cacheDir,
+                               long maxFileSize, int maxFileCount, int concurrencyLevel) {
+        this(new MemoryCache(maxSize, maxCount, concurrencyLevel),
+             new FileCache(cacheDir, maxFileSize, maxFileCount, concurrencyLevel));
     }
 
+    public PropertyCacheDomain(CacheImpl memoryCache, CacheImpl fileCache) {
+        super(memoryCache, fileCache);
+        setFlushInterval(DEFAULT_FLUSH_DELAY);
+    }
 
+    /**
+     * 写入所有待写数据后关闭文件缓存，已安排的写入被取消
+     */
     @Override
     public void close() {
         super.close();
-        isRuning = false;
-        _threadPoolExecutor.remove(saveDataRunnable);
-    }
-
-    @Override
-    protected boolean putCache(CacheModel cacheData) {
-        boolean isUpdated = super.putCache(cacheData);
-        if (isUpdated) {
-            _isUpdated.set(true);
+        ScheduledFuture<?> flushFuture = _flushFuture;
+        if (flushFuture != null) {
+            flushFuture.cancel(false);
         }
-        return isUpdated;
     }
 
+    /**
+     * 没有已安排的写入时安排一次延迟写入，不启动写入线程
+     */
     @Override
-    protected CacheModel removeCache(String md5Key) {
-        CacheModel cache = super.removeCache(md5Key);
-        if (cache != null) {
-            _isUpdated.set(true);
+    protected void scheduleFlush() {
+        if (isClosed() || !_flushScheduled.compareAndSet(false, true)) {
+            return;
         }
-        return cache;
+        _flushFuture = flushScheduler().schedule(_flushRunnable, getFlushInterval(),
+                                                 TimeUnit.MILLISECONDS);
     }
 
-    @Override
-    protected CacheModel removeNextCache() {
-        CacheModel cache = super.removeNextCache();
-        if (cache != null) {
-            _isUpdated.set(true);
+    private static ScheduledThreadPoolExecutor flushScheduler() {
+        ScheduledThreadPoolExecutor scheduler = _flushScheduler;
+        if (scheduler != null) {
+            return scheduler;
+        }
+        synchronized (PropertyCacheDomain.class) {
+            if (_flushScheduler == null) {
+                scheduler = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, "PropertyCacheFlusher");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+                // 空闲时不保留线程
+                scheduler.setKeepAliveTime(30, TimeUnit.SECONDS);
+                scheduler.allowCoreThreadTimeOut(true);
+                _flushScheduler = scheduler;
+            }
+            return _flushScheduler;
         }
-        return cache;
     }
 
+    /**
+     * 是否有尚未写入文件缓存（包括正在写入）的数据变化
+     */
     public boolean getIsUpdated() {
-        return _isUpdated.get();
+        return hasDirtyCaches();
     }
 }
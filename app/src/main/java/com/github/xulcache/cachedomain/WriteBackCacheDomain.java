@@ -1,24 +1,131 @@
 package com.github.xulcache.cachedomain;
 
+import com.github.xulcache.CacheCenter;
 import com.github.xulcache.CacheDomain;
 import com.github.xulcache.CacheModel;
 import com.github.xulcache.cacheimplement.CacheImpl;
 import com.github.xulcache.cacheimplement.FileCache;
 import com.github.xulcache.cacheimplement.MemoryCache;
+import com.github.xulcache.cacheimplement.SerializedData;
+import com.github.xulcache.cacherecycle.RecycleStrategy;
+import com.github.xulcache.event.CacheEventListener;
+import com.github.xulcache.stats.CacheStats;
+import com.github.xulcache.utils.BitmapPool;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * 写回缓存：数据写入内存缓存并记入待写队列，由后台线程定时批量写入文件缓存，读写数据时不访问磁盘。
+ * 同一个key的多次写入在队列中合并，只写入最后的数据；待写数据从内存缓存中回收后仍可从队列中读取。
+ */
 public class WriteBackCacheDomain extends CacheDomain {
 
+    /**
+     * 默认写入文件缓存的间隔
+     */
+    public static final long DEFAULT_FLUSH_INTERVAL = 1000;
+    /**
+     * 默认待写数据的大小上限
+     */
+    public static final long DEFAULT_MAX_DIRTY_BYTES = 4 * 1024 * 1024;
+
+    /**
+     * 文件缓存命中的数据不读入内存缓存（默认）
+     */
+    public static final int PROMOTE_NEVER = 0;
+    /**
+     * 文件缓存命中的数据都读入内存缓存。
+     * 读入的是原始字节，之后{@link #get(String)}返回byte[]而不是文件，需使用getAsString等方法按类型读取
+     */
+    public static final int PROMOTE_ALWAYS = 1;
+    /**
+     * 文件缓存中近期第二次命中的数据才读入内存缓存，只读取一次的数据不占用内存缓存
+     */
+    public static final int PROMOTE_SECOND_HIT = 2;
+
+    /**
+     * 记录近期在文件缓存中命中过的key的槽数
+     */
+    private static final int RECENT_HIT_SLOTS = 4096;
+
+    /**
+     * 每次批量写入文件缓存的最大数据数量，限制同时复制出的数据占用的内存
+     */
+    private static final int FLUSH_BATCH_SIZE = 64;
+
     protected final CacheImpl _memoryCache;
     protected final CacheImpl _fileCache;
 
+    /**
+     * 待写入文件缓存的数据，key相同的数据只保留最后一次写入
+     */
+    private final ConcurrentHashMap<String, DirtyCache> _dirtyCaches =
+            new ConcurrentHashMap<String, DirtyCache>();
+    private final AtomicLong _dirtyBytes = new AtomicLong();
+    private volatile long _flushInterval = DEFAULT_FLUSH_INTERVAL;
+    private volatile long _maxDirtyBytes = DEFAULT_MAX_DIRTY_BYTES;
+
+    /**
+     * 保证同一时间只有一个线程写入，避免同一个key被并发写入文件缓存
+     */
+    private final ReentrantLock _flushLock = new ReentrantLock();
+    private final ReentrantLock _queueLock = new ReentrantLock();
+    private final Condition _flushRequested = _queueLock.newCondition();
+    private final Condition _flushed = _queueLock.newCondition();
+    private boolean _flushPending;
+    /**
+     * 上一次写入时文件缓存抛出异常，失败的数据留在队列中重试，写入数据时不再等待待写数据低于上限
+     */
+    private volatile boolean _flushFailed;
+    private volatile Thread _flusher;
+    private volatile boolean _closed;
+
+    private volatile int _promotionPolicy = PROMOTE_NEVER;
+    /**
+     * 读入内存缓存的数据大小上限，小于0时使用内存缓存容量的1/8
+     */
+    private volatile long _maxPromotionSize = -1;
+    /**
+     * 近期在文件缓存中命中过的key的hash，按hash散列，冲突时覆盖
+     */
+    private final AtomicIntegerArray _recentFileHits = new AtomicIntegerArray(RECENT_HIT_SLOTS);
+
     public WriteBackCacheDomain(long maxSize, int maxCount,
                                 File cacheDir, long maxFileSize, int maxFileCount) {
-        _memoryCache = new MemoryCache(maxSize, maxCount);
-        _fileCache = new FileCache(cacheDir, maxFileSize, maxFileCount);
+        this(maxSize, maxCount, cacheDir, maxFileSize, maxFileCount,
+             CacheCenter.DEFAULT_CONCURRENCY_LEVEL);
+    }
+
+    public WriteBackCacheDomain(long maxSize, int maxCount, File cacheDir,
+                                long maxFileSize, int maxFileCount, int concurrencyLevel) {
+        this(new MemoryCache(maxSize, maxCount, concurrencyLevel),
+             new FileCache(cacheDir, maxFileSize, maxFileCount, concurrencyLevel));
+    }
+
+    /**
+     * 使用指定的一级缓存和二级缓存创建缓存域，可以替换文件缓存的存储引擎
+     */
+    public WriteBackCacheDomain(CacheImpl memoryCache, CacheImpl fileCache) {
+        _memoryCache = memoryCache;
+        _fileCache = fileCache;
+    }
+
+    @Override
+    public void setDomainId(int domainId) {
+        super.setDomainId(domainId);
+        _memoryCache.setDomainId(domainId);
+        _fileCache.setDomainId(domainId);
     }
 
     @Override
@@ -28,83 +135,658 @@ public class WriteBackCacheDomain extends CacheDomain {
         _fileCache.setDomainFlags(domainFlags);
     }
 
+    @Override
+    public void setRecycleStrategy(int... strategies) {
+        super.setRecycleStrategy(strategies);
+        _memoryCache.setRecycleStrategy(strategies);
+        _fileCache.setRecycleStrategy(strategies);
+    }
+
+    @Override
+    public void addRecycleStrategy(RecycleStrategy.Factory factory) {
+        super.addRecycleStrategy(factory);
+        _memoryCache.addRecycleStrategy(factory);
+        _fileCache.addRecycleStrategy(factory);
+    }
+
+    @Override
+    public void setLifeTime(long ms) {
+        super.setLifeTime(ms);
+        _memoryCache.setLifeTime(ms);
+        _fileCache.setLifeTime(ms);
+    }
+
+    @Override
+    public void setStaleTime(long ms) {
+        super.setStaleTime(ms);
+        _memoryCache.setStaleTime(ms);
+        _fileCache.setStaleTime(ms);
+    }
+
+    @Override
+    public void setBitmapPool(BitmapPool pool) {
+        super.setBitmapPool(pool);
+        _memoryCache.setBitmapPool(pool);
+        _fileCache.setBitmapPool(pool);
+    }
+
+    /**
+     * 设置写入文件缓存的间隔，待写数据最多在内存中保留约一个间隔
+     */
+    public void setFlushInterval(long ms) {
+        _flushInterval = ms;
+    }
+
+    public long getFlushInterval() {
+        return _flushInterval;
+    }
+
+    /**
+     * 设置待写数据的大小上限，达到上限时立即写入，写入线程赶不上时写入数据的线程等待写入完成
+     */
+    public void setMaxDirtyBytes(long maxDirtyBytes) {
+        _maxDirtyBytes = maxDirtyBytes;
+    }
+
+    public long getMaxDirtyBytes() {
+        return _maxDirtyBytes;
+    }
+
+    /**
+     * 待写入文件缓存的数据大小
+     */
+    public long getDirtyBytes() {
+        return _dirtyBytes.get();
+    }
+
+    /**
+     * 是否有尚未写入文件缓存（包括正在写入）的数据变化
+     */
+    protected boolean hasDirtyCaches() {
+        return !_dirtyCaches.isEmpty();
+    }
+
+    /**
+     * 是否已调用{@link #close()}
+     */
+    protected boolean isClosed() {
+        return _closed;
+    }
+
+    /**
+     * 设置文件缓存命中时是否将数据读入内存缓存，默认不读入。
+     * 读入后同一个key的{@link #get(String)}返回byte[]而不是文件
+     *
+     * @param promotionPolicy {@link #PROMOTE_NEVER}、{@link #PROMOTE_ALWAYS}或{@link #PROMOTE_SECOND_HIT}
+     */
+    public void setPromotionPolicy(int promotionPolicy) {
+        _promotionPolicy = promotionPolicy;
+    }
+
+    public int getPromotionPolicy() {
+        return _promotionPolicy;
+    }
+
+    /**
+     * 设置读入内存缓存的数据大小上限，超过上限的数据始终从文件缓存读取
+     */
+    public void setMaxPromotionSize(long maxPromotionSize) {
+        _maxPromotionSize = maxPromotionSize;
+    }
+
+    public long getMaxPromotionSize() {
+        long maxPromotionSize = _maxPromotionSize;
+        return maxPromotionSize >= 0 ? maxPromotionSize : _memoryCache.sizeCapacity() / 8;
+    }
+
     @Override
     protected boolean putCache(CacheModel cacheData) {
-        _fileCache.removeCache(cacheData.getKey());//当有更新时，删除filecache的内容，使文件能更新为最新
-        return _memoryCache.putCache(cacheData);
+        if (!_memoryCache.putCache(cacheData)) {
+            return false;
+        }
+        if (cacheData.getOwner() == null) {
+            // 内存缓存保存的是数据的副本（堆外内存缓存），从队列中读取时由内存缓存解析数据
+            cacheData.setOwner(_memoryCache);
+        }
+        markDirty(cacheData.getKey(), new DirtyCache(cacheData));
+        return true;
+    }
+
+    /**
+     * 批量写入内存缓存并记入待写队列，待写数据达到上限时只等待一次
+     */
+    @Override
+    protected List<CacheModel> putCaches(List<CacheModel> caches) {
+        List<CacheModel> stored = _memoryCache.putCaches(caches);
+        for (CacheModel cacheData : stored) {
+            if (cacheData.getOwner() == null) {
+                cacheData.setOwner(_memoryCache);
+            }
+            enqueueDirty(cacheData.getKey(), new DirtyCache(cacheData));
+        }
+        if (!stored.isEmpty()) {
+            checkDirtyLimit();
+        }
+        return stored;
     }
 
     @Override
     protected CacheModel getCache(String key, boolean update) {
         CacheModel data = _memoryCache.getCache(key, update);
         if (data == null) {
+            // 已从内存缓存中回收但尚未写入文件的数据
+            DirtyCache dirtyCache = _dirtyCaches.get(key);
+            if (dirtyCache != null) {
+                return isExpired(dirtyCache.cache) ? null : dirtyCache.cache;
+            }
             data = _fileCache.getCache(key, update);
+            if (data != null && update && shouldPromote(data)) {
+                CacheModel promoted = promote(data);
+                if (promoted != null) {
+                    data = promoted;
+                }
+            }
         }
         return data;
     }
 
+    private boolean shouldPromote(CacheModel cache) {
+        int promotionPolicy = _promotionPolicy;
+        if (promotionPolicy == PROMOTE_NEVER || cache.size() > getMaxPromotionSize()) {
+            return false;
+        }
+        if (promotionPolicy == PROMOTE_SECOND_HIT) {
+            int hash = cache.getKey().hashCode();
+            int slot = (hash ^ (hash >>> 16)) & (RECENT_HIT_SLOTS - 1);
+            if (_recentFileHits.get(slot) != hash) {
+                _recentFileHits.set(slot, hash);
+                return false;
+            }
+            _recentFileHits.compareAndSet(slot, hash, 0);
+        }
+        return true;
+    }
+
+    /**
+     * 读取文件缓存中的数据并放入内存缓存，读取的是原始字节，按读取方式解析
+     *
+     * @return 读取失败或内存缓存中已有新写入的数据时返回null
+     */
+    private CacheModel promote(CacheModel fileCache) {
+        byte[] bytes = _fileCache.getAsBinary(fileCache);
+        if (bytes == null) {
+            return null;
+        }
+        String key = fileCache.getKey();
+        CacheModel promoted = new CacheModel(key, new SerializedData(bytes),
+                                             fileCache.getLastAccessTime());
+        promoted.setOwner(_memoryCache);
+        try {
+            if (!_memoryCache.putCacheIfAbsent(promoted)) {
+                return null;
+            }
+        } catch (RuntimeException e) {
+            // 超过内存缓存的大小限制
+            return null;
+        }
+        if (_dirtyCaches.containsKey(key)) {
+            // 读取过程中有新写入或删除的数据（可能已从内存缓存中回收），移除读入的旧数据，
+            // 新数据仍可从待写队列中读取。只移除读入的数据，不影响并发写入内存缓存的新数据
+            _memoryCache.removeCacheExactly(promoted);
+            return null;
+        }
+        return promoted;
+    }
+
     @Override
     protected CacheModel removeCache(String md5Key) {
         CacheModel cacheModel = _memoryCache.removeCache(md5Key);
-        CacheModel fileCacheModel = _fileCache.removeCache(md5Key);
-        return cacheModel == null ? fileCacheModel : cacheModel;
+        // 文件缓存中的数据由写入线程删除
+        DirtyCache dirtyCache = markDirty(md5Key, new DirtyCache(null));
+        if (cacheModel == null && dirtyCache != null) {
+            cacheModel = dirtyCache.cache;
+        }
+        // 只查找文件缓存的索引，不访问文件
+        return cacheModel == null ? _fileCache.peekCache(md5Key) : cacheModel;
+    }
+
+    @Override
+    protected List<CacheModel> removeCaches(String[] md5Keys) {
+        List<CacheModel> removed = new ArrayList<CacheModel>(md5Keys.length);
+        for (String md5Key : md5Keys) {
+            CacheModel cacheModel = _memoryCache.removeCache(md5Key);
+            DirtyCache dirtyCache = enqueueDirty(md5Key, new DirtyCache(null));
+            if (cacheModel == null && dirtyCache != null) {
+                cacheModel = dirtyCache.cache;
+            }
+            if (cacheModel == null) {
+                cacheModel = _fileCache.peekCache(md5Key);
+            }
+            if (cacheModel != null) {
+                removed.add(cacheModel);
+            }
+        }
+        checkDirtyLimit();
+        return removed;
     }
 
     @Override
     public void clear() {
-        // 同时清除一级缓存和二级缓存
-        _memoryCache.clear();
-        _fileCache.clear();
+        // 同时清除一级缓存、待写数据和二级缓存
+        _flushLock.lock();
+        try {
+            _memoryCache.clear();
+            _dirtyCaches.clear();
+            _dirtyBytes.set(0);
+            _fileCache.clear();
+        } finally {
+            _flushLock.unlock();
+        }
+        signalFlushed();
     }
 
+    /**
+     * 从一级缓存中回收数据，数据已经或即将写入二级缓存；一级缓存为空时从二级缓存删除
+     */
     @Override
     protected CacheModel removeNextCache() {
         CacheModel cacheModel = _memoryCache.removeNextCache();
         if (cacheModel == null) {
-            // 一级缓存未命中，从二级缓存删除
             cacheModel = _fileCache.removeNextCache();
-        } else {
-            // 一级缓存命中，存入二级缓存
-            _fileCache.putCache(cacheModel);
         }
-
         return cacheModel;
     }
 
+    /**
+     * 在当前线程中将待写数据全部写入文件缓存
+     */
+    public void flush() {
+        flushDirtyCaches();
+    }
+
+    /**
+     * 停止写入线程，写入所有待写数据后关闭文件缓存
+     */
     @Override
     public void close() {
-        for (CacheModel cache : _memoryCache.getAllCaches()) {
-            _fileCache.putCache(cache);
+        _queueLock.lock();
+        try {
+            _closed = true;
+            _flushRequested.signalAll();
+        } finally {
+            _queueLock.unlock();
         }
+        Thread flusher = _flusher;
+        if (flusher != null && flusher != Thread.currentThread()) {
+            try {
+                flusher.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        flushDirtyCaches();
         _memoryCache.clear();
+        _fileCache.close();
+    }
+
+    /**
+     * 记入待写队列，替换同一个key尚未写入的数据
+     *
+     * @return 被替换的待写数据
+     */
+    private DirtyCache markDirty(String key, DirtyCache dirtyCache) {
+        DirtyCache oldCache = enqueueDirty(key, dirtyCache);
+        checkDirtyLimit();
+        return oldCache;
+    }
+
+    private DirtyCache enqueueDirty(String key, DirtyCache dirtyCache) {
+        DirtyCache oldCache = _dirtyCaches.put(key, dirtyCache);
+        _dirtyBytes.addAndGet(dirtyCache.size - (oldCache == null ? 0 : oldCache.size));
+        return oldCache;
+    }
+
+    /**
+     * 安排写入，待写数据达到上限时等待写入
+     */
+    private void checkDirtyLimit() {
+        scheduleFlush();
+        if (_dirtyBytes.get() >= _maxDirtyBytes) {
+            awaitFlush();
+        }
+    }
+
+    /**
+     * 记入待写数据后调用，安排写入文件缓存，默认启动写入线程按间隔写入
+     */
+    protected void scheduleFlush() {
+        if (_flusher == null) {
+            startFlusher();
+        }
+    }
+
+    private void startFlusher() {
+        _queueLock.lock();
+        try {
+            if (_flusher != null || _closed) {
+                return;
+            }
+            Thread flusher = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    runFlusher();
+                }
+            }, "WriteBackFlusher-" + getDomainId());
+            flusher.setDaemon(true);
+            flusher.start();
+            _flusher = flusher;
+        } finally {
+            _queueLock.unlock();
+        }
+    }
+
+    private void runFlusher() {
+        while (true) {
+            _queueLock.lock();
+            try {
+                if (!_flushPending && !_closed) {
+                    _flushRequested.await(_flushInterval, TimeUnit.MILLISECONDS);
+                }
+                if (_closed) {
+                    // 剩余数据由close写入
+                    return;
+                }
+                _flushPending = false;
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                _queueLock.unlock();
+            }
+            flushDirtyCaches();
+        }
+    }
+
+    /**
+     * 待写数据达到上限，唤醒写入线程并等待待写数据低于上限，没有写入线程时在当前线程中写入
+     */
+    private void awaitFlush() {
+        if (Thread.currentThread() == _flusher) {
+            return;
+        }
+        if (_flusher == null) {
+            // 没有写入线程（由子类安排写入），在当前线程中写入
+            if (!_closed) {
+                flushDirtyCaches();
+            }
+            return;
+        }
+        _queueLock.lock();
+        try {
+            _flushPending = true;
+            _flushRequested.signal();
+            while (_dirtyBytes.get() >= _maxDirtyBytes && !_dirtyCaches.isEmpty() && !_closed
+                   && !_flushFailed) {
+                _flushed.await(_flushInterval, TimeUnit.MILLISECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            _queueLock.unlock();
+        }
+    }
+
+    private void signalFlushed() {
+        _queueLock.lock();
+        try {
+            _flushed.signalAll();
+        } finally {
+            _queueLock.unlock();
+        }
+    }
+
+    private void flushDirtyCaches() {
+        if (_dirtyCaches.isEmpty()) {
+            return;
+        }
+        _flushLock.lock();
+        try {
+            boolean succeeded = true;
+            List<String> keys = new ArrayList<String>(FLUSH_BATCH_SIZE);
+            List<DirtyCache> batch = new ArrayList<DirtyCache>(FLUSH_BATCH_SIZE);
+            for (Map.Entry<String, DirtyCache> entry : _dirtyCaches.entrySet()) {
+                keys.add(entry.getKey());
+                batch.add(entry.getValue());
+                if (batch.size() == FLUSH_BATCH_SIZE) {
+                    succeeded &= flushBatch(keys, batch);
+                    keys.clear();
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                succeeded &= flushBatch(keys, batch);
+            }
+            _flushFailed = !succeeded;
+        } finally {
+            _flushLock.unlock();
+        }
+        signalFlushed();
+    }
+
+    /**
+     * 写入一批待写数据，删除和写入分别合并为一次文件缓存的批量操作。
+     * 文件缓存抛出异常时，该操作中的数据留在队列中，下次写入时重试
+     *
+     * @return 文件缓存抛出异常时返回false
+     */
+    private boolean flushBatch(List<String> keys, List<DirtyCache> batch) {
+        List<String> removedKeys = new ArrayList<String>();
+        List<CacheModel> flushCaches = new ArrayList<CacheModel>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            DirtyCache dirtyCache = batch.get(i);
+            if (dirtyCache.cache == null) {
+                removedKeys.add(keys.get(i));
+            } else {
+                CacheModel flushCache = toFlushCache(dirtyCache.cache);
+                if (flushCache != null) {
+                    flushCaches.add(flushCache);
+                }
+            }
+        }
+        boolean removeFailed = false;
+        boolean putFailed = false;
+        if (!removedKeys.isEmpty()) {
+            try {
+                _fileCache.removeCaches(removedKeys.toArray(new String[removedKeys.size()]));
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+                removeFailed = true;
+            }
+        }
+        if (!flushCaches.isEmpty()) {
+            try {
+                // 无法写入文件缓存（如超过文件缓存大小限制）的数据只保留在内存缓存中
+                List<CacheModel> flushed = _fileCache.putCaches(flushCaches);
+                if (hasEventListeners()) {
+                    for (CacheModel flushCache : flushed) {
+                        dispatchWriteBackFlush(flushCache);
+                    }
+                }
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+                putFailed = true;
+            }
+        }
+        // 写入失败和写入过程中被再次修改的数据留在队列中，下次写入
+        for (int i = 0; i < batch.size(); i++) {
+            DirtyCache dirtyCache = batch.get(i);
+            if (dirtyCache.cache == null ? removeFailed : putFailed) {
+                continue;
+            }
+            if (_dirtyCaches.remove(keys.get(i), dirtyCache)) {
+                _dirtyBytes.addAndGet(-dirtyCache.size);
+            }
+        }
+        return !removeFailed && !putFailed;
+    }
+
+    /**
+     * 一级缓存中的数据可能不在堆内存中（堆外内存缓存），写入二级缓存前复制出数据。
+     * 被移除的数据已复制回堆内存，直接返回
+     *
+     * @return 数据已被替换或清除时返回null
+     */
+    protected CacheModel toFlushCache(CacheModel cache) {
+        Object data = _memoryCache.getAsObject(cache);
+        if (data == null) {
+            return null;
+        }
+        if (data == cache.getData()) {
+            return cache;
+        }
+        return new CacheModel(cache.getKey(), data, cache.getLastAccessTime());
+    }
+
+    @Override
+    public int purgeExpired() {
+        return _memoryCache.purgeExpired() + _fileCache.purgeExpired();
+    }
+
+    /**
+     * 汇总缓存域和各级缓存的统计数据，命中和耗时在缓存域统计，回收和磁盘读写在各级缓存统计
+     */
+    @Override
+    public CacheStats getStats() {
+        return super.getStats().plus(_memoryCache.getStats()).plus(_fileCache.getStats());
+    }
+
+    /**
+     * 获取内存缓存的统计数据
+     */
+    public CacheStats getMemoryCacheStats() {
+        return _memoryCache.getStats();
+    }
+
+    /**
+     * 获取文件缓存的统计数据
+     */
+    public CacheStats getFileCacheStats() {
+        return _fileCache.getStats();
+    }
+
+    @Override
+    public void resetStats() {
+        super.resetStats();
+        _memoryCache.resetStats();
+        _fileCache.resetStats();
+    }
+
+    /**
+     * 同时注册到各级缓存，回收和文件写入事件由各级缓存发出
+     */
+    @Override
+    public synchronized void addEventListener(CacheEventListener listener) {
+        super.addEventListener(listener);
+        _memoryCache.addEventListener(listener);
+        _fileCache.addEventListener(listener);
+    }
+
+    @Override
+    public synchronized void removeEventListener(CacheEventListener listener) {
+        super.removeEventListener(listener);
+        _memoryCache.removeEventListener(listener);
+        _fileCache.removeEventListener(listener);
+    }
+
+    @Override
+    public boolean isReady() {
+        return _memoryCache.isReady() && _fileCache.isReady();
     }
 
+    @Override
+    public void awaitReady() throws InterruptedException {
+        _memoryCache.awaitReady();
+        _fileCache.awaitReady();
+    }
+
+    @Override
+    public boolean awaitReady(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        return _memoryCache.awaitReady(timeout, unit)
+               && _fileCache.awaitReady(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 所有数据最终都写入文件缓存，大小和数量以文件缓存为准，加上尚未写入的数据带来的变化：
+     * 待写数据替换文件缓存中同一个key的数据，删除记录减去文件缓存中的数据
+     */
     @Override
     public long size() {
-        return _memoryCache.size() + _fileCache.size();
+        long size = _fileCache.size();
+        for (Map.Entry<String, DirtyCache> entry : _dirtyCaches.entrySet()) {
+            CacheModel fileCache = _fileCache.peekCache(entry.getKey());
+            size += entry.getValue().size - (fileCache == null ? 0 : fileCache.size());
+        }
+        return size;
     }
 
     @Override
     public long sizeCapacity() {
-        return _memoryCache.sizeCapacity() + _fileCache.sizeCapacity();
+        return _fileCache.sizeCapacity();
     }
 
     @Override
     public int count() {
-        return _memoryCache.count() + _fileCache.count();
+        int count = _fileCache.count();
+        for (Map.Entry<String, DirtyCache> entry : _dirtyCaches.entrySet()) {
+            boolean inFileCache = _fileCache.peekCache(entry.getKey()) != null;
+            if (entry.getValue().cache == null) {
+                if (inFileCache) {
+                    count--;
+                }
+            } else if (!inFileCache) {
+                count++;
+            }
+        }
+        return count;
     }
 
     @Override
     public int countCapacity() {
-        int count = _memoryCache.countCapacity() + _fileCache.countCapacity();
-        return count > 0 ? count : Integer.MAX_VALUE;
+        return _fileCache.countCapacity();
     }
 
     @Override
     public Collection<CacheModel> getAllCaches() {
         HashSet<CacheModel> caches = new HashSet<CacheModel>(count());
         caches.addAll(_memoryCache.getAllCaches());
-        caches.addAll(_fileCache.getAllCaches());
+        for (DirtyCache dirtyCache : _dirtyCaches.values()) {
+            if (dirtyCache.cache != null) {
+                caches.add(dirtyCache.cache);
+            }
+        }
+        for (CacheModel cache : _fileCache.getAllCaches()) {
+            // 已删除但尚未从文件缓存中删除的数据
+            DirtyCache dirtyCache = _dirtyCaches.get(cache.getKey());
+            if (dirtyCache == null || dirtyCache.cache != null) {
+                caches.add(cache);
+            }
+        }
         return caches;
     }
+
+    /**
+     * 待写队列中的数据，以对象本身区分同一个key的多次写入（CacheModel按key判断相等）
+     */
+    private static final class DirtyCache {
+        /**
+         * 为null时表示数据已删除，写入时删除文件缓存中的数据
+         */
+        final CacheModel cache;
+        final long size;
+
+        DirtyCache(CacheModel cache) {
+            this.cache = cache;
+            this.size = cache == null ? 0 : cache.size();
+        }
+    }
 }
@@ -1,34 +1,112 @@
 package com.github.xulcache.cachedomain;
 
+import com.github.xulcache.CacheCenter;
 import com.github.xulcache.CacheDomain;
 import com.github.xulcache.CacheModel;
 import com.github.xulcache.cacheimplement.CacheImpl;
 import com.github.xulcache.cacheimplement.FileCache;
 import com.github.xulcache.cacheimplement.MemoryCache;
+import com.github.xulcache.cacherecycle.RecycleStrategy;
+import com.github.xulcache.event.CacheEventListener;
+import com.github.xulcache.stats.CacheStats;
+import com.github.xulcache.utils.BitmapPool;
 
 import java.io.File;
 import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 public class WriteThroughCacheDomain extends CacheDomain {
 
     protected final CacheImpl _memoryCache;
     protected final CacheImpl _fileCache;
+    private final CountDownLatch _readyLatch = new CountDownLatch(1);
+    /**
+     * 文件缓存中的数据已同步到内存缓存，同步前未命中内存缓存时从文件缓存读取
+     */
+    private volatile boolean _synced;
 
     public WriteThroughCacheDomain(long maxSize, int maxCount,
                                    File cacheDir, long maxFileSize, int maxFileCount) {
+        this(maxSize, maxCount, cacheDir, maxFileSize, maxFileCount,
+             CacheCenter.DEFAULT_CONCURRENCY_LEVEL);
+    }
+
+    public WriteThroughCacheDomain(long maxSize, int maxCount, File cacheDir,
+                                   long maxFileSize, int maxFileCount, int concurrencyLevel) {
         // 同时写入内存和文件，取最小的大小限制和数量限制
-        long minSize = Math.min(maxSize, maxFileSize);
-        int minCount = Math.min(maxCount, maxFileCount);
+        this(new MemoryCache(Math.min(maxSize, maxFileSize),
+                             Math.min(maxCount, maxFileCount), concurrencyLevel),
+             new FileCache(cacheDir, Math.min(maxSize, maxFileSize),
+                           Math.min(maxCount, maxFileCount), concurrencyLevel));
+    }
+
+    /**
+     * 使用指定的内存缓存和文件缓存创建缓存域，两者的容量限制应当一致
+     */
+    public WriteThroughCacheDomain(CacheImpl memoryCache, CacheImpl fileCache) {
+        _memoryCache = memoryCache;
+        _fileCache = fileCache;
 
-        _memoryCache = new MemoryCache(minSize, minCount);
-        _fileCache = new FileCache(cacheDir, minSize, minCount);
+        if (_fileCache.isReady()) {
+            syncFromFileCache();
+        } else {
+            // 文件缓存在后台加载，加载完成后在加载线程池中同步到内存
+            getLoaderExecutor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        _fileCache.awaitReady();
+                    } catch (InterruptedException e) {
+                        // 线程池关闭，不再同步，未命中内存缓存的数据继续从文件缓存读取
+                        Thread.currentThread().interrupt();
+                        _readyLatch.countDown();
+                        return;
+                    }
+                    syncFromFileCache();
+                }
+            });
+        }
+    }
 
-        // 保证文件缓存和内存保存数据同步
-        for (CacheModel cacheData : _fileCache.getAllCaches()) {
-            _memoryCache.putCache(cacheData);
+    private void syncFromFileCache() {
+        try {
+            // 保证文件缓存和内存保存数据同步，加载期间已写入内存的数据不被覆盖。
+            // 内存缓存保存副本，按内存缓存计算的大小不能覆盖文件缓存计入的大小，数据仍从文件缓存读取
+            for (CacheModel cacheData : _fileCache.getAllCaches()) {
+                CacheModel memoryData = new CacheModel(cacheData);
+                memoryData.setOwner(cacheData.getOwner());
+                _memoryCache.putCacheIfAbsent(memoryData);
+            }
+            _synced = true;
+        } finally {
+            _readyLatch.countDown();
         }
     }
 
+    @Override
+    public boolean isReady() {
+        return _readyLatch.getCount() == 0;
+    }
+
+    @Override
+    public void awaitReady() throws InterruptedException {
+        _readyLatch.await();
+    }
+
+    @Override
+    public boolean awaitReady(long timeout, TimeUnit unit) throws InterruptedException {
+        return _readyLatch.await(timeout, unit);
+    }
+
+    @Override
+    public void setDomainId(int domainId) {
+        super.setDomainId(domainId);
+        _memoryCache.setDomainId(domainId);
+        _fileCache.setDomainId(domainId);
+    }
+
     @Override
     public void setDomainFlags(int domainFlags) {
         super.setDomainFlags(domainFlags);
@@ -36,6 +114,41 @@ public class WriteThroughCacheDomain extends CacheDomain {
         _fileCache.setDomainFlags(domainFlags);
     }
 
+    @Override
+    public void setRecycleStrategy(int... strategies) {
+        super.setRecycleStrategy(strategies);
+        _memoryCache.setRecycleStrategy(strategies);
+        _fileCache.setRecycleStrategy(strategies);
+    }
+
+    @Override
+    public void addRecycleStrategy(RecycleStrategy.Factory factory) {
+        super.addRecycleStrategy(factory);
+        _memoryCache.addRecycleStrategy(factory);
+        _fileCache.addRecycleStrategy(factory);
+    }
+
+    @Override
+    public void setLifeTime(long ms) {
+        super.setLifeTime(ms);
+        _memoryCache.setLifeTime(ms);
+        _fileCache.setLifeTime(ms);
+    }
+
+    @Override
+    public void setStaleTime(long ms) {
+        super.setStaleTime(ms);
+        _memoryCache.setStaleTime(ms);
+        _fileCache.setStaleTime(ms);
+    }
+
+    @Override
+    public void setBitmapPool(BitmapPool pool) {
+        super.setBitmapPool(pool);
+        _memoryCache.setBitmapPool(pool);
+        _fileCache.setBitmapPool(pool);
+    }
+
     @Override
     protected boolean putCache(CacheModel cacheData) {
         boolean putResult = _memoryCache.putCache(cacheData);
@@ -55,21 +168,65 @@ public class WriteThroughCacheDomain extends CacheDomain {
         }
     }
 
+    /**
+     * 批量写入内存缓存和文件缓存，文件缓存保存失败的数据同时从内存缓存中删除
+     */
+    @Override
+    protected List<CacheModel> putCaches(List<CacheModel> caches) {
+        List<CacheModel> stored = _memoryCache.putCaches(caches);
+        if (stored.isEmpty()) {
+            return stored;
+        }
+        List<CacheModel> fileStored = _fileCache.putCaches(stored);
+        if (fileStored.size() < stored.size()) {
+            // 保存成功的数据按原有顺序排列
+            int fileIndex = 0;
+            for (CacheModel cacheData : stored) {
+                if (fileIndex < fileStored.size() && fileStored.get(fileIndex) == cacheData) {
+                    fileIndex++;
+                } else {
+                    _memoryCache.removeCache(cacheData.getKey());
+                }
+            }
+        }
+        return fileStored;
+    }
+
     @Override
     protected CacheModel getCache(String key, boolean update) {
-        return _memoryCache.getCache(key, update);
+        CacheModel data = _memoryCache.getCache(key, update);
+        if (data == null && !_synced) {
+            // 尚未同步到内存，从文件缓存读取
+            data = _fileCache.getCache(key, update);
+        }
+        return data;
     }
 
     @Override
     protected CacheModel removeCache(String md5Key) {
         CacheModel memoryData = _memoryCache.removeCache(md5Key);
-        if (memoryData != null) {
+        if (memoryData != null || !_synced) {
             _fileCache.removeCache(md5Key);
         }
 
         return memoryData;
     }
 
+    @Override
+    protected List<CacheModel> removeCaches(String[] md5Keys) {
+        List<CacheModel> removed = _memoryCache.removeCaches(md5Keys);
+        if (!_synced) {
+            _fileCache.removeCaches(md5Keys);
+        } else if (!removed.isEmpty()) {
+            String[] removedKeys = new String[removed.size()];
+            for (int i = 0; i < removedKeys.length; i++) {
+                removedKeys[i] = removed.get(i).getKey();
+            }
+            _fileCache.removeCaches(removedKeys);
+        }
+        return removed;
+    }
+
     @Override
     public void clear() {
         _memoryCache.clear();
@@ -79,6 +236,7 @@ public class WriteThroughCacheDomain extends CacheDomain {
     @Override
     public void close() {
         _memoryCache.clear();
+        _fileCache.close();
     }
 
     @Override
@@ -91,6 +249,60 @@ public class WriteThroughCacheDomain extends CacheDomain {
         return memoryData;
     }
 
+    @Override
+    public int purgeExpired() {
+        // 文件缓存与内存缓存保存的是同一份数据，只统计内存缓存的清理数量
+        int purgedCount = _memoryCache.purgeExpired();
+        _fileCache.purgeExpired();
+        return purgedCount;
+    }
+
+    /**
+     * 汇总缓存域和各级缓存的统计数据，命中和耗时在缓存域统计，回收和磁盘读写在各级缓存统计
+     */
+    @Override
+    public CacheStats getStats() {
+        return super.getStats().plus(_memoryCache.getStats()).plus(_fileCache.getStats());
+    }
+
+    /**
+     * 获取内存缓存的统计数据
+     */
+    public CacheStats getMemoryCacheStats() {
+        return _memoryCache.getStats();
+    }
+
+    /**
+     * 获取文件缓存的统计数据
+     */
+    public CacheStats getFileCacheStats() {
+        return _fileCache.getStats();
+    }
+
+    @Override
+    public void resetStats() {
+        super.resetStats();
+        _memoryCache.resetStats();
+        _fileCache.resetStats();
+    }
+
+    /**
+     * 同时注册到各级缓存，回收和文件写入事件由各级缓存发出
+     */
+    @Override
+    public synchronized void addEventListener(CacheEventListener listener) {
+        super.addEventListener(listener);
+        _memoryCache.addEventListener(listener);
+        _fileCache.addEventListener(listener);
+    }
+
+    @Override
+    public synchronized void removeEventListener(CacheEventListener listener) {
+        super.removeEventListener(listener);
+        _memoryCache.removeEventListener(listener);
+        _fileCache.removeEventListener(listener);
+    }
+
     @Override
     public long size() {
         return _memoryCache.size();
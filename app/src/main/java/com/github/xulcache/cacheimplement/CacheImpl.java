@@ -1,31 +1,99 @@
 package com.github.xulcache.cacheimplement;
 
+import com.github.xulcache.CacheCenter;
 import com.github.xulcache.CacheDomain;
 import com.github.xulcache.CacheModel;
+import com.github.xulcache.cacherecycle.AccessOrderIndex;
+import com.github.xulcache.cacherecycle.CacheRecycle;
+import com.github.xulcache.cacherecycle.RecycleStrategy;
+import com.github.xulcache.event.CacheEventListener;
+import com.github.xulcache.weigher.DefaultWeigher;
+import com.github.xulcache.weigher.Weigher;
 
+import java.util.AbstractCollection;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
 
 public abstract class CacheImpl extends CacheDomain {
 
+    /**
+     * key锁分段数量，必须为2的幂
+     */
+    private static final int LOCK_STRIPES = 32;
+
+    /**
+     * 最大分段数量，分段由key的hashCode决定
+     */
+    public static final int MAX_CONCURRENCY_LEVEL = 64;
+
     /**
      * 缓存数据map集合
      */
     protected final ConcurrentMap<String, CacheModel> _caches =
             new ConcurrentHashMap<String, CacheModel>();
 
-    protected final AtomicLong _cacheSize = new AtomicLong(0);
-    protected final AtomicInteger _cacheCount = new AtomicInteger(0);
     protected final long _sizeLimit;
     protected final int _countLimit;
 
+    /**
+     * 写入数据时的同步策略，仅对文件缓存有效
+     */
+    protected volatile int _fsyncPolicy = CacheCenter.FSYNC_NONE;
+
+    /**
+     * 计算数据大小的Weigher，数据写入时计算一次
+     */
+    private volatile Weigher _weigher = DefaultWeigher.INSTANCE;
+
+    /**
+     * 缓存分段，每个分段拥有独立的容量限制、计数、访问顺序索引和回收器，写入和回收互不竞争
+     */
+    private final Segment[] _segments;
+
+    /**
+     * 按key分段的锁，同一个key的写入、移除与计数更新在同一把锁内完成，保证计数准确
+     */
+    private final ReentrantLock[] _keyLocks = new ReentrantLock[LOCK_STRIPES];
+
     public CacheImpl(long maxSize, int maxCount) {
+        this(maxSize, maxCount, CacheCenter.DEFAULT_CONCURRENCY_LEVEL);
+    }
+
+    /**
+     * @param concurrencyLevel 分段数量，会调整为不超过{@link #MAX_CONCURRENCY_LEVEL}的2的幂，
+     *                         每个分段的容量为总容量的1/concurrencyLevel，
+     *                         超过分段容量的单个数据借用其他分段的容量，不能超过总容量
+     */
+    public CacheImpl(long maxSize, int maxCount, int concurrencyLevel) {
         _sizeLimit = maxSize;
         _countLimit = maxCount;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            _keyLocks[i] = new ReentrantLock();
+        }
+
+        int segmentCount = 1;
+        while (segmentCount < concurrencyLevel && segmentCount < MAX_CONCURRENCY_LEVEL) {
+            segmentCount <<= 1;
+        }
+        _segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            // 第一个分段直接使用缓存域的回收器，不分段时与原有行为一致
+            CacheRecycle recycler = (i == 0) ? _recycler : new CacheRecycle(this);
+            int segmentCountLimit = Math.max(1, maxCount / segmentCount);
+            recycler.setMaximumCount(segmentCountLimit);
+            _segments[i] = new Segment(recycler, maxSize / segmentCount, segmentCountLimit);
+            _segments[i].caches = segmentCount == 1 ? _caches.values()
+                                                    : new SegmentCaches(_segments[i]);
+        }
     }
 
     @Override
@@ -33,40 +101,231 @@ public abstract class CacheImpl extends CacheDomain {
         if (!CacheModel.isValid(cacheData)) {
             return false;
         }
+        long valueSize = _weigher.weigh(cacheData.getData());
+        if (valueSize < 0) {
+            throw new RuntimeException("Weigher returned a negative size.");
+        }
+        return putCache(cacheData, valueSize);
+    }
 
-        long valueSize = cacheData.size();
-        int valueCount = 1;
-        CacheModel oldCache = _caches.get(cacheData.getKey());
-        if (oldCache != null) {
-            // 已经存在同样的key
-            valueSize -= oldCache.size();
-            valueCount = 0;
+    /**
+     * 保存缓存数据，使用已知的数据大小（如写入文件的字节数），不再通过Weigher计算。
+     * 数据大小保存在缓存数据中，替换和移除时使用同一个值更新计数
+     */
+    protected boolean putCache(CacheModel cacheData, long valueSize) {
+        return putCache(cacheData, valueSize, false);
+    }
+
+    /**
+     * 仅当key不存在时保存缓存数据（如从下一级缓存读取的数据），不覆盖并发写入的新数据
+     *
+     * @return key已存在或无法回收足够空间时返回false
+     */
+    public boolean putCacheIfAbsent(CacheModel cacheData) {
+        if (!CacheModel.isValid(cacheData)) {
+            return false;
+        }
+        long valueSize = _weigher.weigh(cacheData.getData());
+        if (valueSize < 0) {
+            throw new RuntimeException("Weigher returned a negative size.");
+        }
+        return putCache(cacheData, valueSize, true);
+    }
+
+    private boolean putCache(CacheModel cacheData, long valueSize, boolean onlyIfAbsent) {
+        if (!CacheModel.isValid(cacheData)) {
+            return false;
         }
 
+        String key = cacheData.getKey();
+        Segment segment = segmentOf(key);
+        cacheData.setSize(valueSize);
         if (valueSize > _sizeLimit) {
             throw new RuntimeException("Data is too large to put in cache.");
         }
+        boolean oversize = valueSize > segment.sizeLimit;
 
-        while (_cacheSize.get() + valueSize > _sizeLimit) {
-            if (removeNextCache() == null) {
-                // 无法移除，存储失败
+        // 先回收空间再加锁写入，回收时需要获取被回收数据的key锁，不能在持有当前key锁时进行
+        long sizeDelta = valueSize;
+        int countDelta = 1;
+        CacheModel oldCache = _caches.get(key);
+        if (oldCache != null) {
+            if (onlyIfAbsent) {
                 return false;
             }
+            // 已经存在同样的key
+            sizeDelta -= oldCache.size();
+            countDelta = 0;
+        }
+        if (!reserve(segment, oversize, sizeDelta, countDelta)) {
+            // 无法移除，存储失败
+            return false;
         }
-        _cacheSize.addAndGet(valueSize);
 
-        while (_cacheCount.get() + valueCount > _countLimit) {
-            if (removeNextCache() == null) {
+        if (cacheData.getOwner() == null) {
+            cacheData.setOwner(this);
+        }
+        cacheData.updateLastAccessTime();
+
+        ReentrantLock lock = lockOf(key);
+        lock.lock();
+        try {
+            // 以实际被替换的数据计算大小变化，并发写入同一个key时不会重复计数
+            if (onlyIfAbsent) {
+                if (_caches.putIfAbsent(key, cacheData) != null) {
+                    return false;
+                }
+                oldCache = null;
+            } else {
+                oldCache = _caches.put(key, cacheData);
+            }
+            if (oldCache == null) {
+                segment.size.addAndGet(valueSize);
+                segment.count.incrementAndGet();
+            } else {
+                segment.size.addAndGet(valueSize - oldCache.size());
+                if (oldCache != cacheData) {
+                    onCacheReleased(oldCache, false);
+                }
+            }
+            segment.accessOrder.add(cacheData);
+            segment.recycler.onCachePut(cacheData);
+        } finally {
+            lock.unlock();
+        }
+
+        // 并发写入同一分段的数据可能都通过了写入前的容量检查，写入后回收超出的部分。
+        // 超出量不超过同时写入该分段的数据大小之和，写入返回时分段已回到容量限制以内
+        reserve(segment, oversize, 0, 0);
+        return true;
+    }
+
+    /**
+     * 回收空间直到分段可以再写入指定大小和数量的数据，无法回收时停止。
+     * 超过分段容量的数据借用其他分段的容量，只要求总大小不超过总容量，从占用最多的分段回收；
+     * 之后写入该分段的数据仍按分段容量回收，借用的空间随之归还
+     *
+     * @param oversize 写入的数据超过分段容量
+     * @return 无法回收足够空间时返回false
+     */
+    private boolean reserve(Segment segment, boolean oversize, long sizeDelta, int countDelta) {
+        while (true) {
+            CacheModel removed;
+            if (segment.count.get() + countDelta > segment.countLimit) {
+                removed = removeNextCache(segment);
+            } else if (oversize ? size() + sizeDelta > _sizeLimit
+                                : segment.size.get() + sizeDelta > segment.sizeLimit) {
+                removed = oversize ? removeNextCache() : removeNextCache(segment);
+            } else {
+                return true;
+            }
+            if (removed == null) {
                 return false;
             }
         }
-        _cacheCount.addAndGet(valueCount);
+    }
 
-        cacheData.updateLastAccessTime();
-        _caches.put(cacheData.getKey(), cacheData);
+    /**
+     * 批量保存缓存数据，按分段合计需要的空间，每个分段只回收一次。
+     * 超过分段容量的数据写入时按总容量逐个回收，超过总容量的数据不保存
+     *
+     * @return 保存成功的数据
+     */
+    @Override
+    public List<CacheModel> putCaches(List<CacheModel> caches) {
+        long[] valueSizes = new long[caches.size()];
+        for (int i = 0; i < valueSizes.length; i++) {
+            CacheModel cacheData = caches.get(i);
+            if (!CacheModel.isValid(cacheData)) {
+                continue;
+            }
+            valueSizes[i] = _weigher.weigh(cacheData.getData());
+            if (valueSizes[i] < 0) {
+                throw new RuntimeException("Weigher returned a negative size.");
+            }
+        }
+        return putCaches(caches, valueSizes);
+    }
 
-        if (cacheData.getOwner() == null){
-            cacheData.setOwner(this);
+    /**
+     * 批量保存缓存数据，使用已知的数据大小
+     *
+     * @param valueSizes 与caches顺序一致的数据大小
+     */
+    protected List<CacheModel> putCaches(List<CacheModel> caches, long[] valueSizes) {
+        long[] sizeDeltas = new long[_segments.length];
+        int[] countDeltas = new int[_segments.length];
+        boolean[] accepted = new boolean[valueSizes.length];
+        for (int i = 0; i < valueSizes.length; i++) {
+            CacheModel cacheData = caches.get(i);
+            if (!CacheModel.isValid(cacheData)) {
+                continue;
+            }
+            if (valueSizes[i] > _sizeLimit) {
+                continue;
+            }
+            accepted[i] = true;
+            int segmentIndex = segmentIndexOf(cacheData.getKey());
+            if (valueSizes[i] > _segments[segmentIndex].sizeLimit) {
+                continue;
+            }
+            CacheModel oldCache = _caches.get(cacheData.getKey());
+            if (oldCache == null) {
+                sizeDeltas[segmentIndex] += valueSizes[i];
+                countDeltas[segmentIndex]++;
+            } else {
+                sizeDeltas[segmentIndex] += valueSizes[i] - oldCache.size();
+            }
+        }
+
+        // 按合计的空间一次回收，合计超过容量时回收到无法回收为止，剩余的空间不足由逐个写入时处理
+        for (int i = 0; i < _segments.length; i++) {
+            Segment segment = _segments[i];
+            while (segment.size.get() + sizeDeltas[i] > segment.sizeLimit
+                   || segment.count.get() + countDeltas[i] > segment.countLimit) {
+                if (removeNextCache(segment) == null) {
+                    break;
+                }
+            }
+        }
+
+        List<CacheModel> stored = new ArrayList<CacheModel>(valueSizes.length);
+        for (int i = 0; i < valueSizes.length; i++) {
+            if (accepted[i] && putCache(caches.get(i), valueSizes[i], false)) {
+                stored.add(caches.get(i));
+            }
+        }
+        return stored;
+    }
+
+    /**
+     * 加载已存在的缓存数据（如文件缓存启动时扫描到的文件），不触发回收
+     *
+     * @return 已存在相同key的数据（加载过程中写入的新数据）时不加载，返回false
+     */
+    protected boolean loadCache(CacheModel cacheData) {
+        return loadCache(cacheData, cacheData.size());
+    }
+
+    /**
+     * 加载已存在的缓存数据，使用已知的数据大小（如日志中记录的大小），避免重新计算
+     */
+    protected boolean loadCache(CacheModel cacheData, long size) {
+        String key = cacheData.getKey();
+        Segment segment = segmentOf(key);
+        cacheData.setOwner(this);
+        cacheData.setSize(size);
+        ReentrantLock lock = lockOf(key);
+        lock.lock();
+        try {
+            if (_caches.putIfAbsent(key, cacheData) != null) {
+                return false;
+            }
+            segment.size.addAndGet(size);
+            segment.count.incrementAndGet();
+            segment.accessOrder.add(cacheData);
+        } finally {
+            lock.unlock();
         }
         return true;
     }
@@ -75,48 +334,205 @@ public abstract class CacheImpl extends CacheDomain {
     public CacheModel getCache(String key, boolean update) {
         CacheModel data = _caches.get(key);
         if (data == null || isExpired(data)) {
-            if (data != null) {
-                removeCache(key);
+            if (data != null && removeCacheExactly(data)) {
+                onCacheExpired(data);
             }
             return null;
         }
 
-        if (update) {
-            data.updateLastAccessTime();
+        // 过期后继续使用的数据不更新访问时间，保持过期状态直到重新加载或超出继续使用的时间
+        if (update && !isStale(data)) {
+            onCacheAccessed(data);
         }
         return data;
     }
 
+    /**
+     * 过期数据已被移除
+     */
+    protected void onCacheExpired(CacheModel cache) {
+        _stats.recordExpiration();
+        if (hasEventListeners()) {
+            dispatchEvict(cache, CacheEventListener.REASON_EXPIRED);
+        }
+    }
+
+    /**
+     * 记录一次数据访问，更新访问时间和访问顺序
+     */
+    protected void onCacheAccessed(CacheModel cacheData) {
+        cacheData.updateLastAccessTime();
+        Segment segment = segmentOf(cacheData.getKey());
+        segment.accessOrder.touch(cacheData);
+        segment.recycler.onCacheAccessed(cacheData);
+    }
+
+    /**
+     * 只查找索引中的数据，不检查过期，不更新访问记录，文件缓存也不访问文件
+     */
+    public CacheModel peekCache(String key) {
+        return _caches.get(key);
+    }
+
     @Override
     public CacheModel removeCache(String md5Key) {
-        CacheModel data = _caches.remove(md5Key);
-        if (data != null) {
-            _cacheSize.addAndGet(-data.size());
-            _cacheCount.addAndGet(-1);
+        ReentrantLock lock = lockOf(md5Key);
+        lock.lock();
+        try {
+            CacheModel data = _caches.remove(md5Key);
+            if (data != null) {
+                unlinkCache(data);
+            }
+            return data;
+        } finally {
+            lock.unlock();
         }
+    }
 
-        return data;
+    @Override
+    public CacheModel[] getCaches(String[] md5Keys, boolean update) {
+        return super.getCaches(md5Keys, update);
+    }
+
+    @Override
+    public List<CacheModel> removeCaches(String[] md5Keys) {
+        return super.removeCaches(md5Keys);
+    }
+
+    /**
+     * 仅当key当前对应的仍是指定数据时才移除，避免误删并发写入的同key新数据
+     *
+     * @return 移除成功返回true
+     */
+    public boolean removeCacheExactly(CacheModel cache) {
+        String key = cache.getKey();
+        ReentrantLock lock = lockOf(key);
+        lock.lock();
+        try {
+            CacheModel current = _caches.get(key);
+            if (current != cache) {
+                if (current == null) {
+                    // 数据已被移除，清理索引中可能残留的记录，保证回收过程能继续进行
+                    Segment segment = segmentOf(key);
+                    segment.accessOrder.remove(key);
+                    segment.recycler.onCacheRemoved(cache);
+                }
+                return false;
+            }
+            _caches.remove(key);
+            unlinkCache(cache);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 数据已从map中移除，同步更新索引和计数，需在key锁内调用
+     */
+    private void unlinkCache(CacheModel cache) {
+        Segment segment = segmentOf(cache.getKey());
+        segment.accessOrder.remove(cache.getKey());
+        segment.recycler.onCacheRemoved(cache);
+        segment.size.addAndGet(-cache.size());
+        segment.count.decrementAndGet();
+        onCacheReleased(cache, true);
+    }
+
+    /**
+     * 数据已不在缓存中，需在key锁内调用，子类可以在这里释放数据占用的资源
+     *
+     * @param removed 数据被移除（移除、回收或过期）时为true，调用者可能继续使用被移除的数据；
+     *                被替换或清除时为false
+     */
+    protected void onCacheReleased(CacheModel cache, boolean removed) {
     }
 
     @Override
     public void clear() {
-        _caches.clear();
-        _cacheSize.set(0);
-        _cacheCount.set(0);
+        // 获取所有key锁，保证清除过程中没有并发写入
+        for (ReentrantLock lock : _keyLocks) {
+            lock.lock();
+        }
+        try {
+            for (CacheModel cache : _caches.values()) {
+                onCacheReleased(cache, false);
+            }
+            _caches.clear();
+            for (Segment segment : _segments) {
+                segment.accessOrder.clear();
+                segment.recycler.onCacheCleared();
+                segment.size.set(0);
+                segment.count.set(0);
+            }
+        } finally {
+            for (int i = LOCK_STRIPES - 1; i >= 0; i--) {
+                _keyLocks[i].unlock();
+            }
+        }
     }
 
     @Override
     public CacheModel removeNextCache() {
-        if (_caches.isEmpty()) {
-            return null;
+        // 未指定分段时从占用最多的分段回收
+        Segment largest = _segments[0];
+        for (Segment segment : _segments) {
+            if (segment.size.get() > largest.size.get()) {
+                largest = segment;
+            }
+        }
+        return removeNextCache(largest);
+    }
+
+    private CacheModel removeNextCache(Segment segment) {
+        while (segment.count.get() > 0) {
+            // 与CacheRecycle.findRecycledCache的查找顺序一致，同时记录找到回收对象的策略
+            CacheModel cache = null;
+            RecycleStrategy recycledBy = null;
+            for (RecycleStrategy strategy : segment.recycler.getRecycleStrategies()) {
+                cache = strategy.findRecycledCache(segment.caches, segment.accessOrder);
+                // 自定义策略返回其他分段的数据时忽略，回收其他分段无法减少当前分段的占用
+                if (cache != null && segmentOf(cache.getKey()) == segment) {
+                    recycledBy = strategy;
+                    break;
+                }
+                cache = null;
+            }
+            if (cache == null) {
+                return null;
+            }
+            if (removeCacheExactly(cache)) {
+                _stats.recordEviction(segment.recycler.getRecycleStrategyName(recycledBy));
+                if (hasEventListeners()) {
+                    dispatchEvict(cache, isExpired(cache) ? CacheEventListener.REASON_EXPIRED
+                                                          : CacheEventListener.REASON_CAPACITY);
+                }
+                return cache;
+            }
+            // 回收对象已被其他线程移除或替换，重新查找
+        }
+        return null;
+    }
+
+    @Override
+    public int purgeExpired() {
+        if (_lifeTime <= 0) {
+            return 0;
         }
 
-        CacheModel cache = _recycler.recycle(_caches);
-        if (cache != null) {
-            _cacheSize.addAndGet(-cache.size());
-            _cacheCount.addAndGet(-1);
+        // 索引读取队首前会补做推迟的访问调整，过期顺序与访问顺序一致，
+        // 从索引队首开始清理，遇到未过期的数据即可停止
+        int purgedCount = 0;
+        for (Segment segment : _segments) {
+            CacheModel cache;
+            while ((cache = segment.accessOrder.eldest()) != null && isExpired(cache)) {
+                if (removeCacheExactly(cache)) {
+                    onCacheExpired(cache);
+                    purgedCount++;
+                }
+            }
         }
-        return cache;
+        return purgedCount;
     }
 
     @Override
@@ -124,14 +540,59 @@ public abstract class CacheImpl extends CacheDomain {
         return _caches.values();
     }
 
+    @Override
+    public void setRecycleStrategy(int... strategies) {
+        super.setRecycleStrategy(strategies);
+        for (int i = 1; i < _segments.length; i++) {
+            _segments[i].recycler.clear();
+            for (int strategy : strategies) {
+                _segments[i].recycler.addRecycleStrategy(strategy);
+            }
+        }
+    }
+
     public void setRecycleStrategy(int strategyFlags) {
-        _recycler.clear();
-        _recycler.addRecycleStrategy(strategyFlags);
+        setRecycleStrategy(new int[]{strategyFlags});
+    }
+
+    @Override
+    public void addRecycleStrategy(RecycleStrategy.Factory factory) {
+        super.addRecycleStrategy(factory);
+        for (int i = 1; i < _segments.length; i++) {
+            _segments[i].recycler.addRecycleStrategy(factory.create(this));
+        }
+    }
+
+    private Segment segmentOf(String key) {
+        return _segments[segmentIndexOf(key)];
+    }
+
+    private int segmentIndexOf(String key) {
+        if (_segments.length == 1) {
+            return 0;
+        }
+        // key不一定是md5（内存缓存直接使用原始key），使用hashCode的高位选择分段，
+        // 与key锁使用的低位相互独立
+        int h = key.hashCode() * 0x9E3779B9;
+        return h >>> (32 - Integer.numberOfTrailingZeros(_segments.length));
+    }
+
+    /**
+     * 获取key对应的锁，子类读取数据时可以持有该锁，避免与移除过程并发
+     */
+    protected final ReentrantLock lockOf(String key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return _keyLocks[h & (LOCK_STRIPES - 1)];
     }
 
     @Override
     public long size() {
-        return _cacheSize.get();
+        long size = 0;
+        for (Segment segment : _segments) {
+            size += segment.size.get();
+        }
+        return size;
     }
 
     @Override
@@ -141,11 +602,113 @@ public abstract class CacheImpl extends CacheDomain {
 
     @Override
     public int count() {
-        return _cacheCount.get();
+        int count = 0;
+        for (Segment segment : _segments) {
+            count += segment.count.get();
+        }
+        return count;
     }
 
     @Override
     public int countCapacity() {
         return _countLimit;
     }
+
+    /**
+     * 设置写入数据时的同步策略，仅对文件缓存有效
+     *
+     * @param fsyncPolicy {@link CacheCenter#FSYNC_NONE}或{@link CacheCenter#FSYNC_ALWAYS}
+     */
+    public void setFsyncPolicy(int fsyncPolicy) {
+        _fsyncPolicy = fsyncPolicy;
+    }
+
+    /**
+     * 设置计算数据大小的Weigher，只影响之后写入的数据
+     *
+     * @param weigher 为null时使用{@link DefaultWeigher}
+     */
+    public void setWeigher(Weigher weigher) {
+        _weigher = weigher == null ? DefaultWeigher.INSTANCE : weigher;
+    }
+
+    public Weigher getWeigher() {
+        return _weigher;
+    }
+
+    /**
+     * 获取分段数量
+     */
+    public int getConcurrencyLevel() {
+        return _segments.length;
+    }
+
+    private static final class Segment {
+        final AccessOrderIndex accessOrder = new AccessOrderIndex();
+        final AtomicLong size = new AtomicLong(0);
+        final AtomicInteger count = new AtomicInteger(0);
+        final CacheRecycle recycler;
+        final long sizeLimit;
+        final int countLimit;
+        /**
+         * 分段中的数据，传给回收策略查找回收对象
+         */
+        Collection<CacheModel> caches;
+
+        Segment(CacheRecycle recycler, long sizeLimit, int countLimit) {
+            this.recycler = recycler;
+            this.sizeLimit = sizeLimit;
+            this.countLimit = countLimit;
+        }
+    }
+
+    /**
+     * 分段中数据的只读视图，遍历时从全部数据中过滤出属于该分段的数据
+     */
+    private final class SegmentCaches extends AbstractCollection<CacheModel> {
+        private final Segment _segment;
+
+        SegmentCaches(Segment segment) {
+            _segment = segment;
+        }
+
+        @Override
+        public Iterator<CacheModel> iterator() {
+            final Iterator<CacheModel> iterator = _caches.values().iterator();
+            return new Iterator<CacheModel>() {
+                private CacheModel _next;
+
+                @Override
+                public boolean hasNext() {
+                    while (_next == null && iterator.hasNext()) {
+                        CacheModel cache = iterator.next();
+                        if (segmentOf(cache.getKey()) == _segment) {
+                            _next = cache;
+                        }
+                    }
+                    return _next != null;
+                }
+
+                @Override
+                public CacheModel next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    CacheModel cache = _next;
+                    _next = null;
+                    return cache;
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return _segment.count.get();
+        }
+    }
 }
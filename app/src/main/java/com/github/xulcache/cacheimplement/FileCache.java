@@ -4,43 +4,229 @@ import android.graphics.Bitmap;
 import android.graphics.drawable.Drawable;
 import android.util.Log;
 
+import com.github.xulcache.CacheCenter;
 import com.github.xulcache.CacheModel;
-import com.github.xulcache.stream.XulMemoryOutputStream;
+import com.github.xulcache.stream.ByteBufferInputStream;
+import com.github.xulcache.stream.ByteBufferPool;
 import com.github.xulcache.utils.SystemUtil;
 import com.github.xulcache.utils.XulBitmapUtil;
 
 import org.json.JSONArray;
 import org.json.JSONObject;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.RandomAccessFile;
 import java.io.Serializable;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
 
 public class FileCache extends CacheImpl {
 
 	private static final String TEMP_FILE_PREFIX = "temp_";
 
+	/**
+	 * 索引日志，记录每个缓存文件的key、大小和访问时间，启动时重放日志即可恢复索引，
+	 * 不需要遍历缓存目录和读取每个文件的属性
+	 * 格式：magic(4) + 版本(4) + 记录...，记录为 操作(1) + key(UTF) + 操作参数。
+	 * 写入文件前先记录DIRTY，写入完成后记录PUT，重放时只有DIRTY记录的key的文件被删除
+	 */
+	private static final String JOURNAL_FILE = "journal";
+	private static final String JOURNAL_FILE_TEMP = "journal.tmp";
+	private static final int JOURNAL_MAGIC = 0x584A524E;
+	private static final int JOURNAL_VERSION = 2;
+	private static final byte JOURNAL_OP_PUT = 1;       // 参数：大小(8) + 访问时间(8)
+	private static final byte JOURNAL_OP_REMOVE = 2;    // 无参数
+	private static final byte JOURNAL_OP_ACCESS = 3;    // 参数：访问时间(8)
+	private static final byte JOURNAL_OP_DIRTY = 4;     // 无参数
+	/**
+	 * 日志中的冗余记录超过该数量且多于缓存数量时重写日志
+	 */
+	private static final int JOURNAL_REBUILD_THRESHOLD = 2000;
+
+	/**
+	 * 文件大小达到该值时使用内存映射读取
+	 */
+	private static final int MAP_THRESHOLD = 64 * 1024;
+
+	/**
+	 * 修改时间早于打开缓存该时间以上的临时文件才被清理，避免删除正在写入的文件（文件时间精度可能为秒级）
+	 */
+	private static final long TEMP_FILE_MIN_AGE = 10 * 1000;
+
+	private static final ThreadLocal<CharsetEncoder> UTF8_ENCODER = new ThreadLocal<CharsetEncoder>() {
+		@Override
+		protected CharsetEncoder initialValue() {
+			return Charset.forName("UTF-8").newEncoder();
+		}
+	};
+
 	protected File _cacheDir;
 
+	private final ReentrantLock _journalLock = new ReentrantLock();
+	private final AtomicBoolean _journalRebuildScheduled = new AtomicBoolean(false);
+	private final ThreadPoolExecutor _journalExecutor = new ThreadPoolExecutor(0, 1, 30,
+			TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+	private DataOutputStream _journalWriter;
+	private int _redundantOpCount;
+	/**
+	 * 日志写入器打开前有数据被写入或删除，加载完成后需要根据索引重写日志
+	 */
+	private boolean _journalDirty;
+
+	/**
+	 * 后台加载索引时，加载完成前被删除的key，这些key对应的已有数据不再加载
+	 */
+	private final Set<String> _removedWhileLoading =
+			Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+	private final CountDownLatch _loadLatch = new CountDownLatch(1);
+	private volatile boolean _loading;
+
+	/**
+	 * 文件已写入但尚未加入索引的key，核对缓存目录时不删除这些文件
+	 */
+	private final Set<String> _writingKeys =
+			Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+	private final long _openTime = System.currentTimeMillis();
+
 	public FileCache(File cacheDir, long maxSize, int maxCount) {
-		super(maxSize, maxCount);
+		this(cacheDir, maxSize, maxCount, CacheCenter.DEFAULT_CONCURRENCY_LEVEL);
+	}
+
+	public FileCache(File cacheDir, long maxSize, int maxCount, int concurrencyLevel) {
+		this(cacheDir, maxSize, maxCount, concurrencyLevel, false);
+	}
+
+	/**
+	 * @param loadAsync 是否在后台线程加载已有数据的索引，加载完成前读取尚未加载的数据时直接按key查找缓存文件
+	 */
+	public FileCache(File cacheDir, long maxSize, int maxCount, int concurrencyLevel,
+	                 boolean loadAsync) {
+		super(maxSize, maxCount, concurrencyLevel);
 		if (!cacheDir.exists() && !cacheDir.mkdirs()) {
 			Log.e(TAG,"Can't make dirs in " + cacheDir.getAbsolutePath());
+			_loadLatch.countDown();
 			return;
 		}
 		_cacheDir = cacheDir;
-		calculateCacheSizeAndCacheCount();
+		if (loadAsync) {
+			_loading = true;
+			new Thread(new Runnable() {
+				@Override
+				public void run() {
+					loadCaches();
+				}
+			}, TAG + "-loader").start();
+		} else {
+			loadCaches();
+		}
+	}
+
+	private void loadCaches() {
+		try {
+			if (readJournal()) {
+				_journalLock.lock();
+				try {
+					openJournalWriter();
+					if (_journalDirty) {
+						rebuildJournal();
+					}
+				} finally {
+					_journalLock.unlock();
+				}
+				if (isJournalRebuildRequired()) {
+					scheduleJournalRebuild();
+				}
+				scheduleReconcile();
+			} else {
+				// 日志不存在或已损坏，遍历缓存目录重建索引和日志
+				calculateCacheSizeAndCacheCount();
+				rebuildJournal();
+			}
+		} finally {
+			_loading = false;
+			_removedWhileLoading.clear();
+			_loadLatch.countDown();
+		}
+	}
+
+	/**
+	 * 加载已有的缓存文件，加载过程中已被重新写入或删除的数据不再加载
+	 */
+	private boolean loadCacheFile(CacheModel cacheModel, long size) {
+		String key = cacheModel.getKey();
+		if (_removedWhileLoading.contains(key) || !loadCache(cacheModel, size)) {
+			return false;
+		}
+		if (_removedWhileLoading.contains(key)) {
+			// 加载的同时被删除
+			removeCacheExactly(cacheModel);
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * 加载完成前按key直接查找缓存文件
+	 */
+	private CacheModel findCacheFile(String key) {
+		if (_removedWhileLoading.contains(key)) {
+			return null;
+		}
+		File file = new File(_cacheDir, key);
+		if (!file.isFile()) {
+			return null;
+		}
+		CacheModel cacheModel = new CacheModel(key, file, file.lastModified());
+		if (loadCacheFile(cacheModel, file.length())) {
+			return cacheModel;
+		}
+		return _caches.get(key);
+	}
+
+	@Override
+	public boolean isReady() {
+		return !_loading;
+	}
+
+	@Override
+	public void awaitReady() throws InterruptedException {
+		_loadLatch.await();
+	}
+
+	@Override
+	public boolean awaitReady(long timeout, TimeUnit unit) throws InterruptedException {
+		return _loadLatch.await(timeout, unit);
 	}
 
 	/**
@@ -50,59 +236,104 @@ public class FileCache extends CacheImpl {
 //        new Thread(new Runnable() {
 //            @Override
 //            public void run() {
-		long size = 0;
-		int count = 0;
 		File[] cachedFiles = _cacheDir.listFiles();
 		if (cachedFiles != null) {
+			ArrayList<CacheModel> cacheModels = new ArrayList<CacheModel>(cachedFiles.length);
 			for (File cachedFile : cachedFiles) {
-				CacheModel cacheModel = new CacheModel();
-
 				String fileName = cachedFile.getName();
+				if (fileName.equals(JOURNAL_FILE) || fileName.equals(JOURNAL_FILE_TEMP)) {
+					continue;
+				}
 				if (fileName.startsWith(TEMP_FILE_PREFIX)) {
 					// 临时文件，脏数据，删除
 					cachedFile.delete();
 					continue;
 				}
 
-				cacheModel.setKey(fileName);
-				cacheModel.setData(cachedFile);
-				cacheModel.setLastAccessTime(cachedFile.lastModified());
+				// 文件修改时间即写入时间
+				CacheModel cacheModel = new CacheModel(fileName, cachedFile, cachedFile.lastModified());
 				if (isExpired(cacheModel)) {
 					cachedFile.delete();
 					continue;
 				}
+				cacheModels.add(cacheModel);
+			}
 
-				_caches.put(cacheModel.getKey(), cacheModel);
-				cacheModel.setOwner(this);
-				size += cachedFile.length();
-				count++;
+			// 按文件最后访问时间建立访问顺序索引
+			Collections.sort(cacheModels, new Comparator<CacheModel>() {
+				@Override
+				public int compare(CacheModel lhs, CacheModel rhs) {
+					long lhsTime = lhs.getLastAccessTime();
+					long rhsTime = rhs.getLastAccessTime();
+					return lhsTime < rhsTime ? -1 : (lhsTime == rhsTime ? 0 : 1);
+				}
+			});
+			for (CacheModel cacheModel : cacheModels) {
+				loadCacheFile(cacheModel, cacheModel.size());
 			}
-			_cacheSize.set(size);
-			_cacheCount.set(count);
 		}
 //            }
 //        }).start();
 	}
 
-	@Override
-	public String getAsString(CacheModel cacheModel) {
-		File file = (File) cacheModel.getData();
-		if (file == null) {
-			return null;
+	/**
+	 * 重放索引日志恢复缓存索引
+	 *
+	 * @return 日志不存在或已损坏时返回false
+	 */
+	private boolean readJournal() {
+		File journalFile = new File(_cacheDir, JOURNAL_FILE);
+		if (!journalFile.exists()) {
+			return false;
 		}
 
-		BufferedReader in = null;
+		HashMap<String, JournalEntry> entries = new HashMap<String, JournalEntry>();
+		HashSet<String> dirtyKeys = new HashSet<String>();
+		int opCount = 0;
+		DataInputStream in = null;
 		try {
-			in = new BufferedReader(new FileReader(file));
-			String readString = "";
-			String currentLine;
-			while ((currentLine = in.readLine()) != null) {
-				readString += currentLine;
+			in = new DataInputStream(
+				new BufferedInputStream(new FileInputStream(journalFile), 64 * 1024));
+			if (in.readInt() != JOURNAL_MAGIC || in.readInt() != JOURNAL_VERSION) {
+				Log.w(TAG, "Unknown journal format, rebuild from cache files.");
+				return false;
+			}
+			int op;
+			while ((op = in.read()) != -1) {
+				String key = in.readUTF();
+				switch (op) {
+					case JOURNAL_OP_PUT:
+						long size = in.readLong();
+						long time = in.readLong();
+						entries.put(key, new JournalEntry(key, size, time));
+						dirtyKeys.remove(key);
+						break;
+					case JOURNAL_OP_REMOVE:
+						entries.remove(key);
+						dirtyKeys.remove(key);
+						break;
+					case JOURNAL_OP_DIRTY:
+						// 文件可能已被替换为未完成的写入，旧记录不再可信
+						entries.remove(key);
+						dirtyKeys.add(key);
+						break;
+					case JOURNAL_OP_ACCESS:
+						long accessTime = in.readLong();
+						JournalEntry entry = entries.get(key);
+						if (entry != null) {
+							entry.time = accessTime;
+						}
+						break;
+					default:
+						Log.w(TAG, "Journal is corrupt, rebuild from cache files.");
+						return false;
+				}
+				opCount++;
 			}
-			return readString;
 		} catch (IOException e) {
-			e.printStackTrace();
-			return null;
+			// 包括最后一条记录不完整的情况，此时可能有写入了文件但未记录到日志中的数据，需要重建
+			Log.w(TAG, "Journal is corrupt, rebuild from cache files.", e);
+			return false;
 		} finally {
 			if (in != null) {
 				try {
@@ -112,27 +343,338 @@ public class FileCache extends CacheImpl {
 				}
 			}
 		}
+
+		ArrayList<JournalEntry> validEntries = new ArrayList<JournalEntry>(entries.size());
+		for (JournalEntry entry : entries.values()) {
+			entry.cacheModel = new CacheModel(entry.key, new File(_cacheDir, entry.key), entry.time);
+			if (isExpired(entry.cacheModel)) {
+				new File(_cacheDir, entry.key).delete();
+				continue;
+			}
+			validEntries.add(entry);
+		}
+
+		// 按最后访问时间建立访问顺序索引
+		Collections.sort(validEntries, new Comparator<JournalEntry>() {
+			@Override
+			public int compare(JournalEntry lhs, JournalEntry rhs) {
+				return lhs.time < rhs.time ? -1 : (lhs.time == rhs.time ? 0 : 1);
+			}
+		});
+		for (JournalEntry entry : validEntries) {
+			loadCacheFile(entry.cacheModel, entry.size);
+		}
+		if (!dirtyKeys.isEmpty()) {
+			// 写入过程中中断的文件，删除后重写日志去掉这些记录
+			for (String key : dirtyKeys) {
+				deleteOrphanFile(key);
+			}
+			_journalDirty = true;
+		}
+		_redundantOpCount = opCount - validEntries.size();
+		return true;
+	}
+
+	/**
+	 * 在后台核对缓存目录：移除文件已被删除（系统清理或用户清除缓存）的数据，
+	 * 删除日志中没有记录的缓存文件和以前遗留的临时文件
+	 */
+	private void scheduleReconcile() {
+		_journalExecutor.execute(new Runnable() {
+			@Override
+			public void run() {
+				reconcileCacheFiles();
+			}
+		});
+	}
+
+	private void reconcileCacheFiles() {
+		for (CacheModel cacheModel : _caches.values()) {
+			removeIfFileMissing(cacheModel);
+		}
+		File[] cachedFiles = _cacheDir.listFiles();
+		if (cachedFiles == null) {
+			return;
+		}
+		for (File cachedFile : cachedFiles) {
+			String fileName = cachedFile.getName();
+			if (fileName.equals(JOURNAL_FILE) || fileName.equals(JOURNAL_FILE_TEMP)) {
+				continue;
+			}
+			if (fileName.startsWith(TEMP_FILE_PREFIX)) {
+				if (cachedFile.lastModified() < _openTime - TEMP_FILE_MIN_AGE) {
+					cachedFile.delete();
+				}
+				continue;
+			}
+			if (!_caches.containsKey(fileName)) {
+				deleteOrphanFile(fileName);
+			}
+		}
+	}
+
+	/**
+	 * 删除不在索引中的缓存文件，正在写入的文件不删除
+	 */
+	private boolean deleteOrphanFile(String key) {
+		ReentrantLock lock = lockOf(key);
+		lock.lock();
+		try {
+			if (_caches.containsKey(key) || _writingKeys.contains(key)) {
+				return false;
+			}
+			return new File(_cacheDir, key).delete();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * 缓存文件已不存在时移除数据，不再占用容量
+	 *
+	 * @return 文件不存在时返回true
+	 */
+	private boolean removeIfFileMissing(CacheModel cacheModel) {
+		String key = cacheModel.getKey();
+		ReentrantLock lock = lockOf(key);
+		lock.lock();
+		try {
+			if (_writingKeys.contains(key) || ((File) cacheModel.getData()).exists()) {
+				return false;
+			}
+			removeCacheExactly(cacheModel);
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void openJournalWriter() {
+		_journalLock.lock();
+		try {
+			_journalWriter = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(new File(_cacheDir, JOURNAL_FILE), true)));
+		} catch (IOException e) {
+			e.printStackTrace();
+			invalidateJournal();
+		} finally {
+			_journalLock.unlock();
+		}
+	}
+
+	/**
+	 * 根据当前缓存索引重写日志，去掉冗余记录
+	 */
+	private void rebuildJournal() {
+		_journalLock.lock();
+		try {
+			closeJournalWriter();
+			File tempFile = new File(_cacheDir, JOURNAL_FILE_TEMP);
+			DataOutputStream writer = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(tempFile), 64 * 1024));
+			try {
+				writer.writeInt(JOURNAL_MAGIC);
+				writer.writeInt(JOURNAL_VERSION);
+				for (CacheModel cacheModel : _caches.values()) {
+					writer.writeByte(JOURNAL_OP_PUT);
+					writer.writeUTF(cacheModel.getKey());
+					writer.writeLong(cacheModel.size());
+					writer.writeLong(cacheModel.getLastAccessTime());
+				}
+			} finally {
+				writer.close();
+			}
+			if (!tempFile.renameTo(new File(_cacheDir, JOURNAL_FILE))) {
+				throw new IOException("Can't rename journal file.");
+			}
+			_redundantOpCount = 0;
+			_journalDirty = false;
+			openJournalWriter();
+		} catch (IOException e) {
+			e.printStackTrace();
+			invalidateJournal();
+		} finally {
+			_journalLock.unlock();
+		}
+	}
+
+	private void scheduleJournalRebuild() {
+		if (_journalRebuildScheduled.compareAndSet(false, true)) {
+			_journalExecutor.execute(new Runnable() {
+				@Override
+				public void run() {
+					_journalRebuildScheduled.set(false);
+					rebuildJournal();
+				}
+			});
+		}
+	}
+
+	private boolean isJournalRebuildRequired() {
+		return _redundantOpCount >= JOURNAL_REBUILD_THRESHOLD && _redundantOpCount >= count();
+	}
+
+	/**
+	 * 追加一条日志记录，需在数据和索引更新之后调用，保证重写日志时不会遗漏
+	 */
+	private void appendJournal(byte op, String key, long size, long time) {
+		_journalLock.lock();
+		try {
+			if (_journalWriter == null) {
+				if (_loading && op != JOURNAL_OP_ACCESS) {
+					_journalDirty = true;
+				}
+				return;
+			}
+			writeJournalRecord(op, key, size, time);
+			if (op != JOURNAL_OP_ACCESS) {
+				// 访问记录丢失只影响回收顺序，不需要立即写入
+				_journalWriter.flush();
+			}
+			_redundantOpCount++;
+		} catch (IOException e) {
+			e.printStackTrace();
+			invalidateJournal();
+			return;
+		} finally {
+			_journalLock.unlock();
+		}
+
+		if (isJournalRebuildRequired()) {
+			scheduleJournalRebuild();
+		}
+	}
+
+	/**
+	 * 批量追加日志记录，只获取一次锁，所有记录写入后统一写出
+	 */
+	private void appendJournal(byte op, List<CacheModel> caches) {
+		if (caches.isEmpty()) {
+			return;
+		}
+		_journalLock.lock();
+		try {
+			if (_journalWriter == null) {
+				if (_loading && op != JOURNAL_OP_ACCESS) {
+					_journalDirty = true;
+				}
+				return;
+			}
+			for (CacheModel cacheModel : caches) {
+				// 只有写入记录需要大小，避免计算尚未写入文件的数据的大小
+				writeJournalRecord(op, cacheModel.getKey(),
+				                   op == JOURNAL_OP_PUT ? cacheModel.size() : 0,
+				                   cacheModel.getLastAccessTime());
+			}
+			if (op != JOURNAL_OP_ACCESS) {
+				_journalWriter.flush();
+			}
+			_redundantOpCount += caches.size();
+		} catch (IOException e) {
+			e.printStackTrace();
+			invalidateJournal();
+			return;
+		} finally {
+			_journalLock.unlock();
+		}
+
+		if (isJournalRebuildRequired()) {
+			scheduleJournalRebuild();
+		}
+	}
+
+	private void writeJournalRecord(byte op, String key, long size, long time) throws IOException {
+		_journalWriter.writeByte(op);
+		_journalWriter.writeUTF(key);
+		if (op == JOURNAL_OP_PUT) {
+			_journalWriter.writeLong(size);
+			_journalWriter.writeLong(time);
+		} else if (op == JOURNAL_OP_ACCESS) {
+			_journalWriter.writeLong(time);
+		}
+	}
+
+	/**
+	 * 日志无法写入，删除日志，下次启动时遍历缓存目录重建
+	 */
+	private void invalidateJournal() {
+		closeJournalWriter();
+		new File(_cacheDir, JOURNAL_FILE).delete();
+	}
+
+	private void closeJournalWriter() {
+		if (_journalWriter != null) {
+			try {
+				_journalWriter.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			_journalWriter = null;
+		}
+	}
+
+	@Override
+	public String getAsString(CacheModel cacheModel) {
+		// 与写入时使用相同的编码，保留原始换行
+		byte[] data = getAsBinary(cacheModel);
+		if (data == null) {
+			return null;
+		}
+		try {
+			return new String(data, "UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			e.printStackTrace();
+			return null;
+		}
 	}
 
 	@Override
 	public CacheModel getCache(String key, boolean update) {
+		CacheModel cacheModel = findCache(key, update);
+		if (cacheModel != null && update && !isStale(cacheModel)) {
+			appendJournal(JOURNAL_OP_ACCESS, key, 0, cacheModel.getLastAccessTime());
+		}
+		return cacheModel;
+	}
+
+	/**
+	 * 批量读取，访问记录合并追加到日志
+	 */
+	@Override
+	public CacheModel[] getCaches(String[] md5Keys, boolean update) {
+		CacheModel[] caches = new CacheModel[md5Keys.length];
+		List<CacheModel> accessed = new ArrayList<CacheModel>(md5Keys.length);
+		for (int i = 0; i < md5Keys.length; i++) {
+			caches[i] = findCache(md5Keys[i], update);
+			if (caches[i] != null && update && !isStale(caches[i])) {
+				accessed.add(caches[i]);
+			}
+		}
+		appendJournal(JOURNAL_OP_ACCESS, accessed);
+		return caches;
+	}
+
+	/**
+	 * 查找缓存数据，不写入访问记录
+	 */
+	private CacheModel findCache(String key, boolean update) {
 		CacheModel cacheModel = _caches.get(key);
+		if (cacheModel == null && _loading) {
+			cacheModel = findCacheFile(key);
+		}
 		if (cacheModel == null || isExpired(cacheModel)) {
-			if (cacheModel != null) {
-				removeCache(key);
-				((File) cacheModel.getData()).delete();
+			if (cacheModel != null && removeCacheExactly(cacheModel)) {
+				onCacheExpired(cacheModel);
 			}
 			return null;
 		}
 
-		File file = (File) cacheModel.getData();
-		if (!file.exists()) {
+		if (removeIfFileMissing(cacheModel)) {
 			return null;
 		}
 
-		if (update) {
-			cacheModel.updateLastAccessTime();
-			file.setLastModified(cacheModel.getLastAccessTime());
+		if (update && !isStale(cacheModel)) {
+			onCacheAccessed(cacheModel);
 		}
 		return cacheModel;
 	}
@@ -157,12 +699,12 @@ public class FileCache extends CacheImpl {
 		// 写入缓存数据
 		boolean saveSuccessful = false;
 		Object cacheData = newModel.getData();
-		if (cacheData instanceof String) {
-			saveSuccessful = writeToFile(tempFile, (String) cacheData);
-		} else if (cacheData instanceof byte[]) {
-			saveSuccessful = writeToFile(tempFile, (byte[]) cacheData);
-		} else if (cacheData instanceof InputStream) {
-			saveSuccessful = writeToFile(tempFile, (InputStream) cacheData);
+		long writeStart = System.nanoTime();
+		long writtenBytes;
+		if (cacheData instanceof String || cacheData instanceof byte[]
+			|| cacheData instanceof InputStream) {
+			writtenBytes = writeToFile(tempFile, cacheData);
+			saveSuccessful = writtenBytes >= 0;
 		} else {
 			tempFile.deleteOnExit();
 			return dispatched(newModel);
@@ -170,12 +712,151 @@ public class FileCache extends CacheImpl {
 
 		if (saveSuccessful) {
 			// 文件写入成功，保存缓存文件
-			saveFileToCache(tempFile, putTime, newModel);
-			saveSuccessful = super.putCache(newModel);
+			String key = newModel.getKey();
+			appendJournal(JOURNAL_OP_DIRTY, key, 0, 0);
+			saveSuccessful = false;
+			try {
+				saveFileToCache(tempFile, putTime, newModel, writtenBytes);
+				if (hasEventListeners()) {
+					dispatchFileWrite(newModel, writtenBytes, System.nanoTime() - writeStart);
+				}
+				// 使用写入的字节数作为数据大小，不需要再读取文件长度
+				saveSuccessful = super.putCache(newModel, writtenBytes);
+				if (saveSuccessful) {
+					appendJournal(JOURNAL_OP_PUT, key, newModel.size(),
+					              newModel.getLastAccessTime());
+				}
+			} finally {
+				_writingKeys.remove(key);
+				if (!saveSuccessful) {
+					// 无法加入索引（如无法回收足够空间）的文件立即删除
+					deleteOrphanFile(key);
+				}
+			}
 		}
 		return saveSuccessful;
 	}
 
+	/**
+	 * 批量写入缓存文件，所有文件写入后按合计的大小一次回收空间，日志记录合并为一次追加
+	 */
+	@Override
+	public List<CacheModel> putCaches(List<CacheModel> caches) {
+		if (_cacheDir == null || !_cacheDir.exists() && !_cacheDir.mkdirs()) {
+			Log.e(TAG, "Cache directory is null and cannot create.");
+			return new ArrayList<CacheModel>(0);
+		}
+
+		// 先写入所有临时文件，DIRTY记录合并为一次追加后再逐个替换缓存文件
+		List<CacheModel> sources = new ArrayList<CacheModel>(caches.size());
+		List<CacheModel> newModels = new ArrayList<CacheModel>(caches.size());
+		List<File> tempFiles = new ArrayList<File>(caches.size());
+		long[] sizes = new long[caches.size()];
+		long[] putTimes = new long[caches.size()];
+		long[] writeNanos = new long[caches.size()];
+		String tempPrefix = TEMP_FILE_PREFIX + System.currentTimeMillis()
+			+ Thread.currentThread().getId() + "_";
+		for (CacheModel data : caches) {
+			CacheModel newModel = new CacheModel(data);
+			if (!CacheModel.isValid(newModel)) {
+				continue;
+			}
+			Object fileData = toFileData(newModel.getData());
+			if (fileData == null) {
+				continue;
+			}
+			File tempFile = new File(_cacheDir, tempPrefix + newModels.size());
+			long putTime = System.currentTimeMillis();
+			long writeStart = System.nanoTime();
+			long writtenBytes = writeToFile(tempFile, fileData);
+			if (writtenBytes < 0) {
+				tempFile.delete();
+				continue;
+			}
+			sizes[newModels.size()] = writtenBytes;
+			putTimes[newModels.size()] = putTime;
+			writeNanos[newModels.size()] = System.nanoTime() - writeStart;
+			sources.add(data);
+			newModels.add(newModel);
+			tempFiles.add(tempFile);
+		}
+
+		appendJournal(JOURNAL_OP_DIRTY, newModels);
+		List<CacheModel> stored = null;
+		try {
+			for (int i = 0; i < newModels.size(); i++) {
+				saveFileToCache(tempFiles.get(i), putTimes[i], newModels.get(i), sizes[i]);
+				if (hasEventListeners()) {
+					dispatchFileWrite(newModels.get(i), sizes[i], writeNanos[i]);
+				}
+			}
+			stored = super.putCaches(newModels, sizes);
+			appendJournal(JOURNAL_OP_PUT, stored);
+		} finally {
+			for (CacheModel newModel : newModels) {
+				_writingKeys.remove(newModel.getKey());
+			}
+			if (stored == null || stored.size() < newModels.size()) {
+				// 无法加入索引的文件立即删除，已加入索引的key不受影响
+				for (CacheModel newModel : newModels) {
+					deleteOrphanFile(newModel.getKey());
+				}
+			}
+		}
+
+		// 保存成功的数据按写入顺序排列，返回对应的原始数据
+		List<CacheModel> result = new ArrayList<CacheModel>(stored.size());
+		int storedIndex = 0;
+		for (int i = 0; i < newModels.size() && storedIndex < stored.size(); i++) {
+			if (newModels.get(i) == stored.get(storedIndex)) {
+				result.add(sources.get(i));
+				storedIndex++;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * 转换为可以直接写入文件的数据（String、byte[]或InputStream）
+	 *
+	 * @return 不支持的数据类型返回null
+	 */
+	private static Object toFileData(Object data) {
+		if (data instanceof String || data instanceof byte[] || data instanceof InputStream) {
+			return data;
+		}
+		if (data instanceof Bitmap) {
+			return XulBitmapUtil.bitmap2Bytes((Bitmap) data);
+		}
+		if (data instanceof Drawable) {
+			return XulBitmapUtil.bitmap2Bytes(XulBitmapUtil.drawable2Bitmap((Drawable) data));
+		}
+		if (data instanceof JSONObject || data instanceof JSONArray) {
+			return data.toString();
+		}
+		if (data instanceof Serializable) {
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			ObjectOutputStream oos = null;
+			try {
+				oos = new ObjectOutputStream(baos);
+				oos.writeObject(data);
+				oos.flush();
+				return baos.toByteArray();
+			} catch (IOException e) {
+				e.printStackTrace();
+				return null;
+			} finally {
+				if (oos != null) {
+					try {
+						oos.close();
+					} catch (IOException e) {
+					}
+				}
+			}
+		}
+		return null;
+	}
+
 	private boolean dispatched(CacheModel cache) {
 		boolean isDispatched = false;
 		Object data = cache.getData();
@@ -199,31 +880,54 @@ public class FileCache extends CacheImpl {
 		return isDispatched;
 	}
 
-	private void saveFileToCache(File tempFile, long putTime, CacheModel data) {
-		File file = new File(_cacheDir, data.getKey());
-		tempFile.renameTo(file);
+	/**
+	 * 将临时文件替换为缓存文件，加入索引前key一直记录为正在写入，写入完成后需从_writingKeys中移除
+	 */
+	private void saveFileToCache(File tempFile, long putTime, CacheModel data, long size) {
+		String key = data.getKey();
+		File file = new File(_cacheDir, key);
+		ReentrantLock lock = lockOf(key);
+		lock.lock();
+		try {
+			_writingKeys.add(key);
+			tempFile.renameTo(file);
+		} finally {
+			lock.unlock();
+		}
 		file.setLastModified(putTime);
 		data.setLastAccessTime(putTime);
-		data.setData(file);
+		data.setData(file, size);
 	}
 
-	private boolean writeToFile(File tempFile, InputStream cacheData) {
-		boolean saveSuccessful = false;
+	/**
+	 * 写入String、byte[]或InputStream数据到文件
+	 *
+	 * @return 写入的字节数，写入失败返回-1
+	 */
+	private long writeToFile(File tempFile, Object cacheData) {
+		long writtenBytes = -1;
 		FileOutputStream out = null;
 		try {
 			out = new FileOutputStream(tempFile);
-			byte[] tmpBuf = new byte[4096];
-			int len;
-			while ((len = cacheData.read(tmpBuf)) > 0) {
-				out.write(tmpBuf, 0, len);
+			FileChannel channel = out.getChannel();
+			if (cacheData instanceof String) {
+				writeString(channel, (String) cacheData);
+			} else if (cacheData instanceof byte[]) {
+				writeFully(channel, ByteBuffer.wrap((byte[]) cacheData));
+			} else {
+				writeStream(channel, (InputStream) cacheData);
 			}
-			saveSuccessful = true;
+			if (_fsyncPolicy == CacheCenter.FSYNC_ALWAYS) {
+				// 重命名前保证数据已写入存储设备，避免掉电后留下空文件
+				channel.force(true);
+			}
+			writtenBytes = channel.size();
+			_stats.recordDiskWrite(writtenBytes);
 		} catch (Exception e) {
 			e.printStackTrace();
 		} finally {
 			if (out != null) {
 				try {
-					out.flush();
 					out.close();
 				} catch (IOException e) {
 					e.printStackTrace();
@@ -231,53 +935,66 @@ public class FileCache extends CacheImpl {
 			}
 		}
 
-		return saveSuccessful;
+		return writtenBytes;
 	}
 
-	private boolean writeToFile(File tempFile, byte[] cacheData) {
-		boolean saveSuccessful = false;
-		FileOutputStream out = null;
+	private static void writeString(FileChannel channel, String cacheData) throws IOException {
+		CharsetEncoder encoder = UTF8_ENCODER.get();
+		encoder.reset();
+		CharBuffer in = CharBuffer.wrap(cacheData);
+		ByteBuffer buffer = ByteBufferPool.obtain();
 		try {
-			out = new FileOutputStream(tempFile);
-			out.write(cacheData);
-			saveSuccessful = true;
-		} catch (Exception e) {
-			e.printStackTrace();
-		} finally {
-			if (out != null) {
-				try {
-					out.flush();
-					out.close();
-				} catch (IOException e) {
-					e.printStackTrace();
+			CoderResult result;
+			do {
+				result = encoder.encode(in, buffer, true);
+				if (result.isError()) {
+					result.throwException();
 				}
-			}
+				buffer.flip();
+				writeFully(channel, buffer);
+				buffer.clear();
+			} while (result.isOverflow());
+			encoder.flush(buffer);
+			buffer.flip();
+			writeFully(channel, buffer);
+		} finally {
+			ByteBufferPool.recycle(buffer);
 		}
-
-		return saveSuccessful;
 	}
 
-	private boolean writeToFile(File tempFile, String cacheData) {
-		boolean saveSuccessful = false;
-		BufferedWriter out = null;
+	private static void writeStream(FileChannel channel, InputStream cacheData) throws IOException {
+		if (cacheData instanceof FileInputStream) {
+			// 文件之间直接传输，不经过用户空间缓冲区
+			FileChannel source = ((FileInputStream) cacheData).getChannel();
+			long position = 0;
+			long transferred;
+			while ((transferred = channel.transferFrom(source, position, Long.MAX_VALUE)) > 0) {
+				position += transferred;
+			}
+			return;
+		}
+
+		ByteBuffer buffer = ByteBufferPool.obtain();
 		try {
-			out = new BufferedWriter(new FileWriter(tempFile), 1024);
-			out.write(cacheData);
-			saveSuccessful = true;
-		} catch (IOException e) {
-			e.printStackTrace();
-		} finally {
-			if (out != null) {
-				try {
-					out.flush();
-					out.close();
-				} catch (IOException e) {
-					e.printStackTrace();
+			byte[] tmpBuf = buffer.array();
+			int len;
+			while ((len = cacheData.read(tmpBuf, 0, tmpBuf.length)) >= 0) {
+				if (len == 0) {
+					continue;
 				}
+				buffer.clear();
+				buffer.limit(len);
+				writeFully(channel, buffer);
 			}
+		} finally {
+			ByteBufferPool.recycle(buffer);
 		}
+	}
 
-		return saveSuccessful;
+	private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
 	}
 
 	@Override
@@ -291,7 +1008,8 @@ public class FileCache extends CacheImpl {
 		try {
 			RAFile = new RandomAccessFile(file, "r");
 			byte[] byteArray = new byte[(int) RAFile.length()];
-			RAFile.read(byteArray);
+			RAFile.readFully(byteArray);
+			_stats.recordDiskRead(byteArray.length);
 			return byteArray;
 		} catch (Exception e) {
 			e.printStackTrace();
@@ -308,7 +1026,7 @@ public class FileCache extends CacheImpl {
 	}
 
 	@Override
-	public InputStream getAsStream(CacheModel cacheModel) {
+	public ByteBuffer getAsByteBuffer(CacheModel cacheModel) {
 		File file = (File) cacheModel.getData();
 		if (file == null) {
 			return null;
@@ -317,14 +1035,19 @@ public class FileCache extends CacheImpl {
 		RandomAccessFile RAFile = null;
 		try {
 			RAFile = new RandomAccessFile(file, "r");
-
-			final int length = (int) RAFile.length();
-			XulMemoryOutputStream memoryOps = new XulMemoryOutputStream();
-			memoryOps.reset(length);
-			byte[] dataBuffer = memoryOps.getDataBuffer();
-			RAFile.read(dataBuffer, 0, length);
-			memoryOps.setDataSize(length);
-			return memoryOps.toInputStream();
+			FileChannel channel = RAFile.getChannel();
+			long length = channel.size();
+			// 映射的数据按映射长度统计，实际读取量取决于访问的页面
+			_stats.recordDiskRead(length);
+			if (length >= MAP_THRESHOLD) {
+				// 映射在文件关闭甚至删除后仍然有效
+				return channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+			}
+			ByteBuffer buffer = ByteBuffer.allocate((int) length);
+			while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+			}
+			buffer.flip();
+			return buffer.asReadOnlyBuffer();
 		} catch (Exception e) {
 			e.printStackTrace();
 			return null;
@@ -339,6 +1062,15 @@ public class FileCache extends CacheImpl {
 		}
 	}
 
+	@Override
+	public InputStream getAsStream(CacheModel cacheModel) {
+		ByteBuffer buffer = getAsByteBuffer(cacheModel);
+		if (buffer == null) {
+			return null;
+		}
+		return new ByteBufferInputStream(buffer);
+	}
+
 	private void _put(String key, JSONObject value) {
 		CacheModel cacheModel = new CacheModel();
 		cacheModel.setKey(key);
@@ -444,10 +1176,23 @@ public class FileCache extends CacheImpl {
 
 	@Override
 	public Bitmap getAsBitmap(CacheModel cacheModel) {
-		if (getAsBinary(cacheModel) == null) {
+		return getAsBitmap(cacheModel, 0, 0);
+	}
+
+	/**
+	 * 直接从文件解码，不读取到byte[]中
+	 */
+	@Override
+	public Bitmap getAsBitmap(CacheModel cacheModel, int reqWidth, int reqHeight) {
+		File file = (File) cacheModel.getData();
+		if (file == null) {
 			return null;
 		}
-		return XulBitmapUtil.bytes2Bitmap(getAsBinary(cacheModel));
+		Bitmap bitmap = XulBitmapUtil.decodeFile(file, reqWidth, reqHeight, _bitmapPool);
+		if (bitmap != null) {
+			_stats.recordDiskRead(cacheModel.size());
+		}
+		return bitmap;
 	}
 
 	private void _put(String key, Drawable value) {
@@ -456,24 +1201,62 @@ public class FileCache extends CacheImpl {
 
 	@Override
 	public Drawable getAsDrawable(CacheModel cacheModel) {
-		if (getAsBinary(cacheModel) == null) {
+		Bitmap bitmap = getAsBitmap(cacheModel);
+		if (bitmap == null) {
 			return null;
 		}
-		return XulBitmapUtil.bitmap2Drawable(XulBitmapUtil.bytes2Bitmap(getAsBinary(cacheModel)));
+		return XulBitmapUtil.bitmap2Drawable(bitmap);
 	}
 
 	@Override
 	public CacheModel removeCache(String md5Key) {
+		if (_loading) {
+			_removedWhileLoading.add(md5Key);
+		}
 		CacheModel cacheModel = super.removeCache(md5Key);
-		removeCacheFile(cacheModel);
+		if (cacheModel != null) {
+			removeCacheFile(cacheModel);
+			appendJournal(JOURNAL_OP_REMOVE, md5Key, 0, 0);
+		} else if (_loading && _cacheDir != null && new File(_cacheDir, md5Key).delete()) {
+			// 数据尚未加载，直接删除缓存文件
+			appendJournal(JOURNAL_OP_REMOVE, md5Key, 0, 0);
+		}
 		return cacheModel;
 	}
 
+	/**
+	 * 批量删除，删除记录合并追加到日志
+	 */
 	@Override
-	public CacheModel removeNextCache() {
-		CacheModel cacheModel = super.removeNextCache();
-		removeCacheFile(cacheModel);
-		return cacheModel;
+	public List<CacheModel> removeCaches(String[] md5Keys) {
+		List<CacheModel> removed = new ArrayList<CacheModel>(md5Keys.length);
+		List<CacheModel> journalRecords = new ArrayList<CacheModel>(md5Keys.length);
+		for (String md5Key : md5Keys) {
+			if (_loading) {
+				_removedWhileLoading.add(md5Key);
+			}
+			CacheModel cacheModel = super.removeCache(md5Key);
+			if (cacheModel != null) {
+				removeCacheFile(cacheModel);
+				removed.add(cacheModel);
+				journalRecords.add(cacheModel);
+			} else if (_loading && _cacheDir != null && new File(_cacheDir, md5Key).delete()) {
+				// 删除记录只使用key
+				journalRecords.add(new CacheModel(md5Key, null, 0));
+			}
+		}
+		appendJournal(JOURNAL_OP_REMOVE, journalRecords);
+		return removed;
+	}
+
+	@Override
+	public boolean removeCacheExactly(CacheModel cache) {
+		if (super.removeCacheExactly(cache)) {
+			removeCacheFile(cache);
+			appendJournal(JOURNAL_OP_REMOVE, cache.getKey(), 0, 0);
+			return true;
+		}
+		return false;
 	}
 
 	private void removeCacheFile(CacheModel cacheModel) {
@@ -491,8 +1274,42 @@ public class FileCache extends CacheImpl {
 	public void clear() {
 		super.clear();
 		if (_cacheDir != null) {
-			SystemUtil.deleteDir(_cacheDir);
-			_cacheDir.mkdirs();
+			_journalLock.lock();
+			try {
+				closeJournalWriter();
+				SystemUtil.deleteDir(_cacheDir);
+				_cacheDir.mkdirs();
+				rebuildJournal();
+			} finally {
+				_journalLock.unlock();
+			}
+		}
+	}
+
+	@Override
+	public void close() {
+		_journalLock.lock();
+		try {
+			if (_journalWriter != null) {
+				_journalWriter.flush();
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		} finally {
+			_journalLock.unlock();
+		}
+	}
+
+	private static final class JournalEntry {
+		final String key;
+		final long size;
+		long time;
+		CacheModel cacheModel;
+
+		JournalEntry(String key, long size, long time) {
+			this.key = key;
+			this.size = size;
+			this.time = time;
 		}
 	}
 
@@ -0,0 +1,1040 @@
+package com.github.xulcache.cacheimplement;
+
+import android.graphics.Bitmap;
+import android.graphics.drawable.Drawable;
+import android.util.Log;
+
+import com.github.xulcache.CacheCenter;
+import com.github.xulcache.CacheModel;
+import com.github.xulcache.stream.ByteBufferInputStream;
+import com.github.xulcache.stream.ByteBufferPool;
+import com.github.xulcache.utils.XulBitmapUtil;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 日志结构的文件缓存
+ * 所有数据以追加方式顺序写入少量日志分段文件，内存中只保存key到数据位置的索引，
+ * 写入时不需要创建、重命名和删除文件，读取时按位置直接读取。
+ * 删除和覆盖的数据由后台线程整理，有效数据复制到当前分段后删除旧分段。
+ * 分段通过RandomAccessFile在分段锁内读写，读取线程被中断时不会关闭分段。
+ * <p>
+ * 记录格式：magic(4) + 序号(8) + 写入时间(8) + key长度(2) + 数据长度(4，-1表示删除) + key + 数据
+ * 启动时按分段顺序重放所有记录，同一个key以序号最大的记录为准。
+ */
+public class LogFileCache extends CacheImpl {
+
+	private static final String SEGMENT_FILE_PREFIX = "segment_";
+	private static final String SEGMENT_FILE_SUFFIX = ".log";
+
+	private static final int RECORD_MAGIC = 0x584C4F47;
+	private static final int RECORD_HEADER_SIZE = 4 + 8 + 8 + 2 + 4;
+	private static final int TOMBSTONE = -1;
+
+	/**
+	 * 单个日志分段的大小上限，超出后开始写入新的分段
+	 */
+	private static final long MAX_SEGMENT_SIZE = 4 * 1024 * 1024;
+	/**
+	 * 已封闭分段中无效数据达到该比例时触发整理
+	 */
+	private static final float COMPACT_THRESHOLD = 0.5f;
+	/**
+	 * 数据大小达到该值时使用内存映射读取
+	 */
+	private static final int MAP_THRESHOLD = 64 * 1024;
+
+	protected File _cacheDir;
+
+	private final ConcurrentHashMap<Integer, LogSegment> _logSegments =
+			new ConcurrentHashMap<Integer, LogSegment>();
+	/**
+	 * 追加写入锁，所有记录（数据、删除标记、整理复制）按顺序追加
+	 */
+	private final ReentrantLock _writeLock = new ReentrantLock();
+	private final AtomicLong _sequence = new AtomicLong(0);
+	private final AtomicBoolean _compactScheduled = new AtomicBoolean(false);
+	private final ThreadPoolExecutor _compactExecutor = new ThreadPoolExecutor(0, 1, 30,
+			TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+	private volatile LogSegment _activeSegment;
+
+	public LogFileCache(File cacheDir, long maxSize, int maxCount) {
+		this(cacheDir, maxSize, maxCount, CacheCenter.DEFAULT_CONCURRENCY_LEVEL);
+	}
+
+	public LogFileCache(File cacheDir, long maxSize, int maxCount, int concurrencyLevel) {
+		super(maxSize, maxCount, concurrencyLevel);
+		if (!cacheDir.exists() && !cacheDir.mkdirs()) {
+			Log.e(TAG, "Can't make dirs in " + cacheDir.getAbsolutePath());
+			return;
+		}
+		_cacheDir = cacheDir;
+		_writeLock.lock();
+		try {
+			replaySegments();
+			LogSegment lastSegment = _logSegments.get(nextSegmentId() - 1);
+			if (lastSegment != null && lastSegment.size < MAX_SEGMENT_SIZE) {
+				// 继续写入上次的分段，避免频繁重启时产生大量很小的分段
+				_activeSegment = lastSegment;
+			} else {
+				openActiveSegment(nextSegmentId());
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		} finally {
+			_writeLock.unlock();
+		}
+	}
+
+	/**
+	 * 按分段顺序重放日志，重建内存索引
+	 */
+	private void replaySegments() throws IOException {
+		File[] files = _cacheDir.listFiles();
+		if (files == null) {
+			return;
+		}
+
+		ArrayList<Integer> segmentIds = new ArrayList<Integer>();
+		for (File file : files) {
+			int segmentId = parseSegmentId(file.getName());
+			if (segmentId >= 0) {
+				segmentIds.add(segmentId);
+			}
+		}
+		Collections.sort(segmentIds);
+
+		HashMap<String, ReplayedRecord> latest = new HashMap<String, ReplayedRecord>();
+		for (int segmentId : segmentIds) {
+			LogSegment segment = openSegment(segmentId);
+			long validSize = replaySegment(segment, latest);
+			if (validSize < segment.length()) {
+				// 写入中断造成的不完整记录，截断
+				Log.w(TAG, "Truncate broken log segment " + segment.file.getName() + " at " + validSize);
+				segment.truncate(validSize);
+			}
+			segment.size = validSize;
+			_logSegments.put(segmentId, segment);
+		}
+
+		ArrayList<CacheModel> cacheModels = new ArrayList<CacheModel>(latest.size());
+		for (ReplayedRecord replayed : latest.values()) {
+			if (replayed.record == null) {
+				continue;
+			}
+			CacheModel cacheModel = new CacheModel(replayed.key, replayed.record, replayed.time);
+			if (isExpired(cacheModel)) {
+				continue;
+			}
+			cacheModels.add(cacheModel);
+		}
+
+		// 所有分段的大小减去有效数据即为无效数据
+		for (LogSegment segment : _logSegments.values()) {
+			segment.deadBytes.set(segment.size);
+		}
+		for (CacheModel cacheModel : cacheModels) {
+			LogRecord record = (LogRecord) cacheModel.getData();
+			_logSegments.get(record.getSegmentId()).deadBytes.addAndGet(-record.getRecordLength());
+		}
+
+		// 按写入时间建立访问顺序索引
+		Collections.sort(cacheModels, new Comparator<CacheModel>() {
+			@Override
+			public int compare(CacheModel lhs, CacheModel rhs) {
+				long lhsTime = lhs.getLastAccessTime();
+				long rhsTime = rhs.getLastAccessTime();
+				return lhsTime < rhsTime ? -1 : (lhsTime == rhsTime ? 0 : 1);
+			}
+		});
+		for (CacheModel cacheModel : cacheModels) {
+			loadCache(cacheModel);
+		}
+	}
+
+	/**
+	 * 重放单个分段
+	 *
+	 * @return 分段中完整记录的总长度
+	 */
+	private long replaySegment(LogSegment segment,
+	                           HashMap<String, ReplayedRecord> latest) throws IOException {
+		DataInputStream in = new DataInputStream(
+				new BufferedInputStream(new FileInputStream(segment.file), 64 * 1024));
+		long position = 0;
+		try {
+			while (true) {
+				int magic;
+				try {
+					magic = in.readInt();
+				} catch (EOFException e) {
+					break;
+				}
+				if (magic != RECORD_MAGIC) {
+					break;
+				}
+				long sequence = in.readLong();
+				long time = in.readLong();
+				int keyLength = in.readUnsignedShort();
+				int dataLength = in.readInt();
+				byte[] keyBytes = new byte[keyLength];
+				in.readFully(keyBytes);
+				if (dataLength > 0 && in.skipBytes(dataLength) < dataLength) {
+					break;
+				}
+
+				int recordLength = RECORD_HEADER_SIZE + keyLength + Math.max(0, dataLength);
+				String key = new String(keyBytes, "UTF-8");
+				LogRecord record = dataLength == TOMBSTONE ? null
+						: new LogRecord(segment.id, position + RECORD_HEADER_SIZE + keyLength,
+						                dataLength, recordLength);
+				ReplayedRecord replayed = latest.get(key);
+				if (replayed == null || replayed.sequence < sequence) {
+					latest.put(key, new ReplayedRecord(key, sequence, time, record));
+				}
+				if (sequence > _sequence.get()) {
+					_sequence.set(sequence);
+				}
+				position += recordLength;
+			}
+		} catch (EOFException e) {
+			// 最后一条记录不完整
+		} finally {
+			try {
+				in.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+		return position;
+	}
+
+	@Override
+	public boolean putCache(CacheModel data) {
+		if (_activeSegment == null || !CacheModel.isValid(data)) {
+			return false;
+		}
+
+		byte[] bytes = toBytes(data.getData());
+		if (bytes == null) {
+			return false;
+		}
+
+		String key = data.getKey();
+		long putTime = System.currentTimeMillis();
+		long writeStart = System.nanoTime();
+		LogRecord record;
+		_writeLock.lock();
+		try {
+			record = append(key, _sequence.incrementAndGet(), putTime, bytes);
+		} catch (IOException e) {
+			e.printStackTrace();
+			return false;
+		} finally {
+			_writeLock.unlock();
+		}
+
+		CacheModel oldModel = _caches.get(key);
+		CacheModel newModel = new CacheModel(key, record, putTime);
+		boolean saveSuccessful;
+		try {
+			saveSuccessful = super.putCache(newModel, record.getLength());
+		} catch (RuntimeException e) {
+			revertRecord(key, record);
+			throw e;
+		}
+
+		if (saveSuccessful) {
+			if (oldModel != null && oldModel.getData() instanceof LogRecord) {
+				markDead((LogRecord) oldModel.getData());
+			}
+			if (hasEventListeners()) {
+				dispatchFileWrite(newModel, record.getRecordLength(), System.nanoTime() - writeStart);
+			}
+		} else {
+			revertRecord(key, record);
+		}
+		return saveSuccessful;
+	}
+
+	/**
+	 * 批量写入，所有记录在一次加锁内顺序追加并只同步一次，之后按合计的大小一次回收空间
+	 */
+	@Override
+	public List<CacheModel> putCaches(List<CacheModel> caches) {
+		if (_activeSegment == null) {
+			return new ArrayList<CacheModel>(0);
+		}
+
+		List<CacheModel> sources = new ArrayList<CacheModel>(caches.size());
+		List<byte[]> payloads = new ArrayList<byte[]>(caches.size());
+		for (CacheModel data : caches) {
+			if (!CacheModel.isValid(data)) {
+				continue;
+			}
+			byte[] bytes = toBytes(data.getData());
+			if (bytes != null) {
+				sources.add(data);
+				payloads.add(bytes);
+			}
+		}
+		if (sources.isEmpty()) {
+			return new ArrayList<CacheModel>(0);
+		}
+
+		long putTime = System.currentTimeMillis();
+		long writeStart = System.nanoTime();
+		LogRecord[] records = new LogRecord[sources.size()];
+		int written = 0;
+		boolean writeFailed = false;
+		_writeLock.lock();
+		try {
+			for (; written < records.length; written++) {
+				records[written] = write(sources.get(written).getKey(), _sequence.incrementAndGet(),
+				                         putTime, payloads.get(written));
+			}
+			if (_fsyncPolicy == CacheCenter.FSYNC_ALWAYS) {
+				_activeSegment.sync();
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			writeFailed = true;
+		} finally {
+			_writeLock.unlock();
+		}
+		if (writeFailed) {
+			for (int i = 0; i < written; i++) {
+				revertRecord(sources.get(i).getKey(), records[i]);
+			}
+			return new ArrayList<CacheModel>(0);
+		}
+		long writeNanos = (System.nanoTime() - writeStart) / records.length;
+
+		CacheModel[] oldModels = new CacheModel[records.length];
+		List<CacheModel> newModels = new ArrayList<CacheModel>(records.length);
+		long[] sizes = new long[records.length];
+		for (int i = 0; i < records.length; i++) {
+			String key = sources.get(i).getKey();
+			oldModels[i] = _caches.get(key);
+			newModels.add(new CacheModel(key, records[i], putTime));
+			sizes[i] = records[i].getLength();
+		}
+		List<CacheModel> stored = super.putCaches(newModels, sizes);
+
+		// 保存成功的数据按写入顺序排列，其余记录需要恢复
+		List<CacheModel> result = new ArrayList<CacheModel>(stored.size());
+		int storedIndex = 0;
+		for (int i = 0; i < records.length; i++) {
+			CacheModel newModel = newModels.get(i);
+			if (storedIndex < stored.size() && stored.get(storedIndex) == newModel) {
+				storedIndex++;
+				if (oldModels[i] != null && oldModels[i].getData() instanceof LogRecord) {
+					markDead((LogRecord) oldModels[i].getData());
+				}
+				if (hasEventListeners()) {
+					dispatchFileWrite(newModel, records[i].getRecordLength(), writeNanos);
+				}
+				result.add(sources.get(i));
+			} else {
+				revertRecord(newModel.getKey(), records[i]);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * 写入的记录未能保存到索引中，追加新的记录恢复该key在日志中的状态，避免重启后读到未保存的数据
+	 */
+	private void revertRecord(String key, LogRecord record) {
+		markDead(record);
+		_writeLock.lock();
+		try {
+			CacheModel current = _caches.get(key);
+			if (current == null) {
+				appendTombstone(key);
+			} else if (current.getData() instanceof LogRecord) {
+				LogRecord currentRecord = (LogRecord) current.getData();
+				byte[] bytes = readRecord(currentRecord);
+				if (bytes != null) {
+					// 数据内容不变，保留已计入的大小
+					current.setData(append(key, _sequence.incrementAndGet(),
+					                       current.getLastAccessTime(), bytes), current.size());
+					markDead(currentRecord);
+				}
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		} finally {
+			_writeLock.unlock();
+		}
+	}
+
+	@Override
+	public CacheModel removeCache(String md5Key) {
+		CacheModel cacheModel = super.removeCache(md5Key);
+		if (cacheModel != null) {
+			onRecordRemoved(cacheModel);
+		}
+		return cacheModel;
+	}
+
+	/**
+	 * 批量删除，先从索引中移除，再在一次加锁内追加所有删除标记并只同步一次
+	 */
+	@Override
+	public List<CacheModel> removeCaches(String[] md5Keys) {
+		List<CacheModel> removed = new ArrayList<CacheModel>(md5Keys.length);
+		for (String md5Key : md5Keys) {
+			CacheModel cacheModel = super.removeCache(md5Key);
+			if (cacheModel != null) {
+				removed.add(cacheModel);
+			}
+		}
+		if (removed.isEmpty()) {
+			return removed;
+		}
+
+		_writeLock.lock();
+		try {
+			if (_activeSegment != null) {
+				long time = System.currentTimeMillis();
+				for (CacheModel cacheModel : removed) {
+					write(cacheModel.getKey(), _sequence.incrementAndGet(), time, null);
+				}
+				if (_fsyncPolicy == CacheCenter.FSYNC_ALWAYS) {
+					_activeSegment.sync();
+				}
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		} finally {
+			_writeLock.unlock();
+		}
+		for (CacheModel cacheModel : removed) {
+			if (cacheModel.getData() instanceof LogRecord) {
+				markDead((LogRecord) cacheModel.getData());
+			}
+		}
+		return removed;
+	}
+
+	@Override
+	public boolean removeCacheExactly(CacheModel cache) {
+		if (super.removeCacheExactly(cache)) {
+			onRecordRemoved(cache);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * 数据已从索引中移除，追加删除标记
+	 * 删除标记必须在索引移除之后写入，保证与后台整理复制的记录保持正确的先后顺序
+	 */
+	private void onRecordRemoved(CacheModel cacheModel) {
+		_writeLock.lock();
+		try {
+			appendTombstone(cacheModel.getKey());
+		} catch (IOException e) {
+			e.printStackTrace();
+		} finally {
+			_writeLock.unlock();
+		}
+		if (cacheModel.getData() instanceof LogRecord) {
+			markDead((LogRecord) cacheModel.getData());
+		}
+	}
+
+	@Override
+	public void clear() {
+		super.clear();
+		_writeLock.lock();
+		try {
+			for (LogSegment segment : _logSegments.values()) {
+				segment.close();
+				segment.file.delete();
+			}
+			_logSegments.clear();
+			_activeSegment = null;
+			if (_cacheDir != null) {
+				openActiveSegment(0);
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		} finally {
+			_writeLock.unlock();
+		}
+	}
+
+	@Override
+	public void close() {
+		_writeLock.lock();
+		try {
+			if (_activeSegment != null) {
+				_activeSegment.sync();
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		} finally {
+			_writeLock.unlock();
+		}
+	}
+
+	// =======================================
+	// ============ 日志读写 ==================
+	// =======================================
+
+	private LogRecord append(String key, long sequence, long time, byte[] data) throws IOException {
+		LogRecord record = write(key, sequence, time, data);
+		if (_fsyncPolicy == CacheCenter.FSYNC_ALWAYS) {
+			_activeSegment.sync();
+		}
+		return record;
+	}
+
+	/**
+	 * 追加记录，不同步到存储设备，批量写入时由调用者在全部写入后同步一次
+	 */
+	private LogRecord write(String key, long sequence, long time, byte[] data) throws IOException {
+		byte[] keyBytes = key.getBytes("UTF-8");
+		int dataLength = data == null ? TOMBSTONE : data.length;
+		int recordLength = RECORD_HEADER_SIZE + keyBytes.length + (data == null ? 0 : data.length);
+
+		if (_activeSegment.size > 0 && _activeSegment.size + recordLength > MAX_SEGMENT_SIZE) {
+			LogSegment sealed = _activeSegment;
+			if (_fsyncPolicy == CacheCenter.FSYNC_ALWAYS) {
+				// 批量写入时之前的记录尚未同步
+				sealed.sync();
+			}
+			openActiveSegment(sealed.id + 1);
+			checkCompaction(sealed);
+		}
+
+		ByteBuffer buffer = ByteBuffer.allocate(recordLength);
+		buffer.putInt(RECORD_MAGIC);
+		buffer.putLong(sequence);
+		buffer.putLong(time);
+		buffer.putShort((short) keyBytes.length);
+		buffer.putInt(dataLength);
+		buffer.put(keyBytes);
+		if (data != null) {
+			buffer.put(data);
+		}
+
+		LogSegment segment = _activeSegment;
+		long recordStart = segment.size;
+		segment.write(recordStart, buffer.array());
+		segment.size = recordStart + recordLength;
+		_stats.recordDiskWrite(recordLength);
+		if (data == null) {
+			// 删除标记本身不包含有效数据
+			segment.deadBytes.addAndGet(recordLength);
+			return null;
+		}
+		return new LogRecord(segment.id, recordStart + RECORD_HEADER_SIZE + keyBytes.length,
+		                     dataLength, recordLength);
+	}
+
+	private void appendTombstone(String key) throws IOException {
+		if (_activeSegment != null) {
+			append(key, _sequence.incrementAndGet(), System.currentTimeMillis(), null);
+		}
+	}
+
+	/**
+	 * 读取记录的数据
+	 *
+	 * @return 分段已被整理删除或读取失败时返回null
+	 */
+	private byte[] readRecord(LogRecord record) {
+		LogSegment segment = _logSegments.get(record.getSegmentId());
+		if (segment == null) {
+			return null;
+		}
+
+		byte[] data = new byte[record.getLength()];
+		try {
+			if (!segment.read(record.getOffset(), data)) {
+				return null;
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		}
+		_stats.recordDiskRead(record.getLength());
+		return data;
+	}
+
+	/**
+	 * 以内存映射的方式读取记录的数据，映射失败（如读取线程被中断）时改为直接读取
+	 *
+	 * @return 分段已被整理删除或读取失败时返回null
+	 */
+	private ByteBuffer mapRecord(LogRecord record) {
+		LogSegment segment = _logSegments.get(record.getSegmentId());
+		if (segment == null) {
+			return null;
+		}
+		try {
+			ByteBuffer buffer = segment.map(record.getOffset(), record.getLength());
+			if (buffer != null) {
+				// 映射在分段整理删除后仍然有效，按映射长度统计读取量
+				_stats.recordDiskRead(record.getLength());
+			}
+			return buffer;
+		} catch (IOException e) {
+			byte[] bytes = readRecord(record);
+			return bytes == null ? null : ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+		}
+	}
+
+	private void markDead(LogRecord record) {
+		LogSegment segment = _logSegments.get(record.getSegmentId());
+		if (segment != null) {
+			segment.deadBytes.addAndGet(record.getRecordLength());
+			checkCompaction(segment);
+		}
+	}
+
+	private void checkCompaction(LogSegment segment) {
+		if (segment == _activeSegment
+		    || segment.deadBytes.get() < segment.size * COMPACT_THRESHOLD) {
+			return;
+		}
+		if (_compactScheduled.compareAndSet(false, true)) {
+			_compactExecutor.execute(_compactRunnable);
+		}
+	}
+
+	private final Runnable _compactRunnable = new Runnable() {
+		@Override
+		public void run() {
+			_compactScheduled.set(false);
+			ArrayList<Integer> segmentIds = new ArrayList<Integer>(_logSegments.keySet());
+			Collections.sort(segmentIds);
+			for (int i = 0; i < segmentIds.size(); i++) {
+				LogSegment segment = _logSegments.get(segmentIds.get(i));
+				if (segment == null || segment == _activeSegment
+				    || segment.deadBytes.get() < segment.size * COMPACT_THRESHOLD) {
+					continue;
+				}
+				try {
+					compact(segment, i == 0);
+				} catch (IOException e) {
+					e.printStackTrace();
+					return;
+				}
+			}
+		}
+	};
+
+	/**
+	 * 整理分段，将仍然有效的记录复制到当前分段，然后删除该分段
+	 * 复制的记录保留原有序号，重放时不会覆盖之后写入的数据或删除标记
+	 *
+	 * @param isOldest 是否为最早的分段，最早的分段之前没有其他记录，其中的删除标记可以直接丢弃
+	 */
+	private void compact(LogSegment segment, boolean isOldest) throws IOException {
+		DataInputStream in = new DataInputStream(
+				new BufferedInputStream(new FileInputStream(segment.file), 64 * 1024));
+		try {
+			long position = 0;
+			while (position < segment.size) {
+				if (in.readInt() != RECORD_MAGIC) {
+					break;
+				}
+				long sequence = in.readLong();
+				long time = in.readLong();
+				int keyLength = in.readUnsignedShort();
+				int dataLength = in.readInt();
+				byte[] keyBytes = new byte[keyLength];
+				in.readFully(keyBytes);
+				byte[] data = null;
+				if (dataLength > 0) {
+					data = new byte[dataLength];
+					in.readFully(data);
+				} else if (dataLength == 0) {
+					data = new byte[0];
+				}
+				long dataOffset = position + RECORD_HEADER_SIZE + keyLength;
+				position = dataOffset + Math.max(0, dataLength);
+
+				String key = new String(keyBytes, "UTF-8");
+				_writeLock.lock();
+				try {
+					CacheModel current = _caches.get(key);
+					if (data == null) {
+						if (!isOldest && current == null) {
+							append(key, sequence, time, null);
+						}
+						continue;
+					}
+					if (current == null || !(current.getData() instanceof LogRecord)) {
+						continue;
+					}
+					LogRecord record = (LogRecord) current.getData();
+					if (record.getSegmentId() == segment.id && record.getOffset() == dataOffset) {
+						current.setData(append(key, sequence, time, data), current.size());
+					}
+				} finally {
+					_writeLock.unlock();
+				}
+			}
+		} finally {
+			try {
+				in.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+
+		_writeLock.lock();
+		try {
+			_logSegments.remove(segment.id);
+			segment.close();
+			segment.file.delete();
+		} finally {
+			_writeLock.unlock();
+		}
+	}
+
+	private void openActiveSegment(int segmentId) throws IOException {
+		LogSegment segment = openSegment(segmentId);
+		segment.size = segment.length();
+		_logSegments.put(segmentId, segment);
+		_activeSegment = segment;
+	}
+
+	private LogSegment openSegment(int segmentId) throws IOException {
+		File file = new File(_cacheDir, String.format("%s%08d%s",
+				SEGMENT_FILE_PREFIX, segmentId, SEGMENT_FILE_SUFFIX));
+		return new LogSegment(segmentId, file);
+	}
+
+	private int nextSegmentId() {
+		int segmentId = -1;
+		for (int id : _logSegments.keySet()) {
+			segmentId = Math.max(segmentId, id);
+		}
+		return segmentId + 1;
+	}
+
+	private static int parseSegmentId(String fileName) {
+		if (!fileName.startsWith(SEGMENT_FILE_PREFIX) || !fileName.endsWith(SEGMENT_FILE_SUFFIX)) {
+			return -1;
+		}
+		try {
+			return Integer.parseInt(fileName.substring(SEGMENT_FILE_PREFIX.length(),
+					fileName.length() - SEGMENT_FILE_SUFFIX.length()));
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	// =======================================
+	// ============ 数据转换 ==================
+	// =======================================
+
+	private static byte[] toBytes(Object data) {
+		try {
+			if (data instanceof String) {
+				return ((String) data).getBytes("UTF-8");
+			} else if (data instanceof byte[]) {
+				return (byte[]) data;
+			} else if (data instanceof InputStream) {
+				return readFully((InputStream) data);
+			} else if (data instanceof JSONObject || data instanceof JSONArray) {
+				return data.toString().getBytes("UTF-8");
+			} else if (data instanceof Bitmap) {
+				return XulBitmapUtil.bitmap2Bytes((Bitmap) data);
+			} else if (data instanceof Drawable) {
+				return XulBitmapUtil.bitmap2Bytes(XulBitmapUtil.drawable2Bitmap((Drawable) data));
+			} else if (data instanceof Serializable) {
+				ByteArrayOutputStream baos = new ByteArrayOutputStream();
+				ObjectOutputStream oos = new ObjectOutputStream(baos);
+				oos.writeObject(data);
+				oos.close();
+				return baos.toByteArray();
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		return null;
+	}
+
+	private static byte[] readFully(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ByteBuffer buffer = ByteBufferPool.obtain();
+		try {
+			byte[] tmpBuf = buffer.array();
+			int len;
+			while ((len = in.read(tmpBuf, 0, tmpBuf.length)) >= 0) {
+				out.write(tmpBuf, 0, len);
+			}
+		} finally {
+			ByteBufferPool.recycle(buffer);
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * 读取期间记录所在的分段可能被整理删除，数据已复制到新的位置时按新的位置重新读取
+	 */
+	@Override
+	public byte[] getAsBinary(CacheModel cacheModel) {
+		Object data = cacheModel.getData();
+		while (data instanceof LogRecord) {
+			byte[] bytes = readRecord((LogRecord) data);
+			if (bytes != null) {
+				return bytes;
+			}
+			Object relocated = cacheModel.getData();
+			if (relocated == data) {
+				return null;
+			}
+			data = relocated;
+		}
+		return null;
+	}
+
+	@Override
+	public String getAsString(CacheModel cacheModel) {
+		byte[] data = getAsBinary(cacheModel);
+		if (data == null) {
+			return null;
+		}
+		try {
+			return new String(data, "UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	@Override
+	public ByteBuffer getAsByteBuffer(CacheModel cacheModel) {
+		Object data = cacheModel.getData();
+		while (data instanceof LogRecord) {
+			LogRecord record = (LogRecord) data;
+			ByteBuffer buffer;
+			if (record.getLength() < MAP_THRESHOLD) {
+				byte[] bytes = readRecord(record);
+				buffer = bytes == null ? null : ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+			} else {
+				buffer = mapRecord(record);
+			}
+			if (buffer != null) {
+				return buffer;
+			}
+			// 分段已被整理删除，数据已复制到新的位置时重新读取
+			Object relocated = cacheModel.getData();
+			if (relocated == data) {
+				return null;
+			}
+			data = relocated;
+		}
+		return null;
+	}
+
+	@Override
+	public InputStream getAsStream(CacheModel cacheModel) {
+		ByteBuffer buffer = getAsByteBuffer(cacheModel);
+		return buffer == null ? null : new ByteBufferInputStream(buffer);
+	}
+
+	@Override
+	public JSONObject getAsJSONObject(CacheModel cacheModel) {
+		String JSONString = getAsString(cacheModel);
+		try {
+			return new JSONObject(JSONString);
+		} catch (Exception e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	@Override
+	public JSONArray getAsJSONArray(CacheModel cacheModel) {
+		String JSONString = getAsString(cacheModel);
+		try {
+			return new JSONArray(JSONString);
+		} catch (Exception e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	@Override
+	public Object getAsObject(CacheModel cacheModel) {
+		byte[] data = getAsBinary(cacheModel);
+		if (data == null) {
+			return null;
+		}
+		ObjectInputStream ois = null;
+		try {
+			ois = new ObjectInputStream(new ByteArrayInputStream(data));
+			return ois.readObject();
+		} catch (Exception e) {
+			e.printStackTrace();
+			return null;
+		} finally {
+			if (ois != null) {
+				try {
+					ois.close();
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		}
+	}
+
+	@Override
+	public Bitmap getAsBitmap(CacheModel cacheModel) {
+		return getAsBitmap(cacheModel, 0, 0);
+	}
+
+	/**
+	 * 较大的记录以内存映射的方式读取并解码，不复制到byte[]中
+	 */
+	@Override
+	public Bitmap getAsBitmap(CacheModel cacheModel, int reqWidth, int reqHeight) {
+		ByteBuffer buffer = getAsByteBuffer(cacheModel);
+		return buffer == null ? null
+		                      : XulBitmapUtil.decodeBuffer(buffer, reqWidth, reqHeight, _bitmapPool);
+	}
+
+	@Override
+	public Drawable getAsDrawable(CacheModel cacheModel) {
+		Bitmap bitmap = getAsBitmap(cacheModel);
+		return bitmap == null ? null : XulBitmapUtil.bitmap2Drawable(bitmap);
+	}
+
+	/**
+	 * 日志分段，读写在分段锁内通过RandomAccessFile定位后进行。
+	 * 不使用FileChannel读写：FileChannel在操作的线程被中断时会关闭，之后所有读写都会失败
+	 */
+	private static final class LogSegment {
+		final int id;
+		final File file;
+		final RandomAccessFile randomAccessFile;
+		final AtomicLong deadBytes = new AtomicLong(0);
+		volatile long size;
+		/**
+		 * 分段已关闭，需在分段锁内访问
+		 */
+		private boolean closed;
+
+		LogSegment(int id, File file) throws IOException {
+			this.id = id;
+			this.file = file;
+			this.randomAccessFile = new RandomAccessFile(file, "rw");
+		}
+
+		/**
+		 * @return 分段已关闭时返回false
+		 */
+		synchronized boolean read(long position, byte[] data) throws IOException {
+			if (closed) {
+				return false;
+			}
+			randomAccessFile.seek(position);
+			randomAccessFile.readFully(data);
+			return true;
+		}
+
+		synchronized void write(long position, byte[] data) throws IOException {
+			if (closed) {
+				throw new IOException("Log segment " + id + " is closed");
+			}
+			randomAccessFile.seek(position);
+			randomAccessFile.write(data);
+		}
+
+		/**
+		 * 使用单独的通道映射，映射的线程被中断时只关闭该通道，映射在通道关闭后仍然有效
+		 *
+		 * @return 分段已关闭时返回null
+		 */
+		synchronized ByteBuffer map(long position, int length) throws IOException {
+			if (closed) {
+				return null;
+			}
+			RandomAccessFile mapFile = new RandomAccessFile(file, "r");
+			try {
+				return mapFile.getChannel().map(FileChannel.MapMode.READ_ONLY, position, length);
+			} finally {
+				mapFile.close();
+			}
+		}
+
+		synchronized void sync() throws IOException {
+			if (!closed) {
+				randomAccessFile.getFD().sync();
+			}
+		}
+
+		synchronized long length() throws IOException {
+			return randomAccessFile.length();
+		}
+
+		synchronized void truncate(long length) throws IOException {
+			randomAccessFile.setLength(length);
+		}
+
+		/**
+		 * 关闭分段，之后的读取返回失败，正在进行的读取完成后才关闭
+		 */
+		synchronized void close() {
+			closed = true;
+			try {
+				randomAccessFile.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	private static final class ReplayedRecord {
+		final String key;
+		final long sequence;
+		final long time;
+		final LogRecord record;
+
+		ReplayedRecord(String key, long sequence, long time, LogRecord record) {
+			this.key = key;
+			this.sequence = sequence;
+			this.time = time;
+			this.record = record;
+		}
+	}
+}
@@ -0,0 +1,47 @@
+package com.github.xulcache.cacheimplement;
+
+/**
+ * 日志结构文件缓存中一条数据记录的位置
+ */
+public final class LogRecord {
+
+	private final int _segmentId;
+	private final long _offset;
+	private final int _length;
+	private final int _recordLength;
+
+	LogRecord(int segmentId, long offset, int length, int recordLength) {
+		_segmentId = segmentId;
+		_offset = offset;
+		_length = length;
+		_recordLength = recordLength;
+	}
+
+	/**
+	 * 数据所在的日志分段id
+	 */
+	public int getSegmentId() {
+		return _segmentId;
+	}
+
+	/**
+	 * 数据在日志分段中的起始位置
+	 */
+	public long getOffset() {
+		return _offset;
+	}
+
+	/**
+	 * 数据长度
+	 */
+	public int getLength() {
+		return _length;
+	}
+
+	/**
+	 * 整条记录（包括记录头和key）在日志分段中占用的长度
+	 */
+	int getRecordLength() {
+		return _recordLength;
+	}
+}
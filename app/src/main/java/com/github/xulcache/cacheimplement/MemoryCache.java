@@ -4,18 +4,39 @@ package com.github.xulcache.cacheimplement;
 import android.graphics.Bitmap;
 import android.graphics.drawable.Drawable;
 
+import com.github.xulcache.CacheCenter;
 import com.github.xulcache.CacheModel;
+import com.github.xulcache.utils.XulBitmapUtil;
 
 import org.json.JSONArray;
 import org.json.JSONObject;
 
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
+import java.util.Collection;
 
 public class MemoryCache extends CacheImpl {
 
 	public MemoryCache(long maxSize, int maxCount) {
-		super(maxSize, maxCount);
+		this(maxSize, maxCount, CacheCenter.DEFAULT_CONCURRENCY_LEVEL);
+	}
+
+	public MemoryCache(long maxSize, int maxCount, int concurrencyLevel) {
+		super(maxSize, maxCount, concurrencyLevel);
+	}
+
+	/**
+	 * 内存缓存的key不会用作文件名，直接使用原始key，不需要计算md5
+	 * 作为多级缓存域的一级缓存时，由缓存域统一转换key
+	 */
+	@Override
+	protected String toCacheKey(String key) {
+		return key;
+	}
+
+	@Override
+	protected String[] toCacheKeys(Collection<String> keys) {
+		return keys.toArray(new String[keys.size()]);
 	}
 
 	@Override
@@ -27,6 +48,9 @@ public class MemoryCache extends CacheImpl {
 		if (data instanceof byte[]) {
 			return new ByteArrayInputStream(getAsBinary(cacheModel));
 		}
+		if (data instanceof SerializedData) {
+			return new ByteArrayInputStream(((SerializedData) data).getBytes());
+		}
 		return null;
 	}
 
@@ -36,6 +60,9 @@ public class MemoryCache extends CacheImpl {
 		if (data instanceof String) {
 			return (String) data;
 		}
+		if (data instanceof SerializedData) {
+			return ((SerializedData) data).asString();
+		}
 		return String.valueOf(data);
 	}
 
@@ -45,6 +72,9 @@ public class MemoryCache extends CacheImpl {
 		if (data instanceof JSONObject) {
 			return (JSONObject) data;
 		}
+		if (data instanceof SerializedData) {
+			return ((SerializedData) data).asJSONObject();
+		}
 		return null;
 	}
 
@@ -54,6 +84,9 @@ public class MemoryCache extends CacheImpl {
 		if (data instanceof JSONArray) {
 			return (JSONArray) data;
 		}
+		if (data instanceof SerializedData) {
+			return ((SerializedData) data).asJSONArray();
+		}
 		return null;
 	}
 
@@ -63,12 +96,19 @@ public class MemoryCache extends CacheImpl {
 		if (data instanceof byte[]) {
 			return (byte[]) data;
 		}
+		if (data instanceof SerializedData) {
+			return ((SerializedData) data).getBytes();
+		}
 		return null;
 	}
 
 	@Override
 	public Object getAsObject(CacheModel cacheModel) {
-		return cacheModel.getData();
+		Object data = cacheModel.getData();
+		if (data instanceof SerializedData) {
+			return ((SerializedData) data).asObject();
+		}
+		return data;
 	}
 
 	@Override
@@ -77,6 +117,9 @@ public class MemoryCache extends CacheImpl {
 		if (data instanceof Bitmap) {
 			return (Bitmap) data;
 		}
+		if (data instanceof SerializedData) {
+			return ((SerializedData) data).asBitmap();
+		}
 		return null;
 	}
 
@@ -86,16 +129,26 @@ public class MemoryCache extends CacheImpl {
 		if (data instanceof Drawable) {
 			return (Drawable) data;
 		}
+		if (data instanceof SerializedData) {
+			return XulBitmapUtil.bitmap2Drawable(((SerializedData) data).asBitmap());
+		}
 		return null;
 	}
 
+	/**
+	 * 从文件缓存读取的数据返回原始字节
+	 */
 	@Override
-	public void close() {
-		clear();
+	protected Object getData(CacheModel cache) {
+		Object data = cache.getData();
+		if (data instanceof SerializedData) {
+			return ((SerializedData) data).getBytes();
+		}
+		return data;
 	}
 
 	@Override
-	public boolean putCache(CacheModel cacheData) {
-		return false;
+	public void close() {
+		clear();
 	}
 }
@@ -0,0 +1,303 @@
+package com.github.xulcache.cacheimplement;
+
+import com.github.xulcache.CacheCenter;
+import com.github.xulcache.CacheModel;
+import com.github.xulcache.weigher.DefaultWeigher;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 堆外内存缓存：byte[]和String数据保存在按块分配的直接内存中，堆内存中只保留索引，
+ * 读取时复制出数据。其他类型的数据以及超过slab大小的数据仍保存在堆内存中。
+ * 数据被移除（移除、回收或过期）时复制回堆内存后释放所在的块，保证被移除的数据仍可使用（如写回到文件缓存）。
+ */
+public class OffHeapMemoryCache extends MemoryCache {
+
+	/**
+	 * 一次写入没有可用的块时，最多回收的数据大小（按slab数计），超过后写入失败，
+	 * 避免为一条数据清空大量其他大小的数据
+	 */
+	private static final int MAX_EVICTED_SLABS = 4;
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private static final ThreadLocal<CharsetEncoder> UTF8_ENCODER = new ThreadLocal<CharsetEncoder>() {
+		@Override
+		protected CharsetEncoder initialValue() {
+			// 与String.getBytes一致，无法编码的字符替换为'?'
+			return UTF8.newEncoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		}
+	};
+
+	private final SlabAllocator _allocator;
+
+	public OffHeapMemoryCache(long maxSize, int maxCount) {
+		this(maxSize, maxCount, CacheCenter.DEFAULT_CONCURRENCY_LEVEL);
+	}
+
+	public OffHeapMemoryCache(long maxSize, int maxCount, int concurrencyLevel) {
+		super(maxSize, maxCount, concurrencyLevel);
+		_allocator = new SlabAllocator(maxSize);
+	}
+
+	/**
+	 * 已申请的堆外内存大小
+	 */
+	public long getAllocatedMemory() {
+		return _allocator.getAllocatedMemory();
+	}
+
+	@Override
+	public boolean putCache(CacheModel cacheData) {
+		if (!CacheModel.isValid(cacheData)) {
+			return false;
+		}
+		Object data = cacheData.getData();
+		byte[] bytes = null;
+		String str = null;
+		int length;
+		if (data instanceof byte[]) {
+			bytes = (byte[]) data;
+			length = bytes.length;
+		} else if (data instanceof String) {
+			str = (String) data;
+			long utf8Length = DefaultWeigher.utf8Length(str);
+			if (utf8Length > _allocator.getMaxLength()) {
+				return super.putCache(cacheData);
+			}
+			length = (int) utf8Length;
+		} else {
+			return super.putCache(cacheData);
+		}
+		if (length > _allocator.getMaxLength()) {
+			// 超过slab大小的数据无法分配块
+			return super.putCache(cacheData);
+		}
+
+		SlabRecord record;
+		long evictedSize = 0;
+		long maxEvictedSize = (long) MAX_EVICTED_SLABS * _allocator.getSlabSize();
+		while ((record = _allocator.allocate(length, str != null)) == null) {
+			// 没有空闲块时回收数据，释放的块可能属于其他大小，直到出现可用的slab
+			if (evictedSize >= maxEvictedSize) {
+				return false;
+			}
+			CacheModel removed = removeNextCache();
+			if (removed == null) {
+				return false;
+			}
+			evictedSize += removed.size();
+		}
+		if (str != null) {
+			writeString(record, str);
+		} else {
+			SlabAllocator.write(record, bytes);
+		}
+
+		// 不修改调用者的数据对象，写通缓存会将同一个对象同时写入文件缓存
+		CacheModel offHeapCache = new CacheModel(cacheData.getKey(), record, cacheData.getLastAccessTime());
+		offHeapCache.setOwner(this);
+		boolean success = false;
+		try {
+			success = super.putCache(offHeapCache, record.getCapacity());
+			return success;
+		} finally {
+			if (!success) {
+				_allocator.free(record);
+			}
+		}
+	}
+
+	/**
+	 * 堆外内存按块分配，需要的空间取决于空闲块的大小，无法按合计的大小预先回收，逐个写入
+	 */
+	@Override
+	public List<CacheModel> putCaches(List<CacheModel> caches) {
+		List<CacheModel> stored = new ArrayList<CacheModel>(caches.size());
+		for (CacheModel cache : caches) {
+			if (putCache(cache)) {
+				stored.add(cache);
+			}
+		}
+		return stored;
+	}
+
+	@Override
+	protected void onCacheReleased(CacheModel cache, boolean removed) {
+		Object data = cache.getData();
+		if (!(data instanceof SlabRecord)) {
+			return;
+		}
+		SlabRecord record = (SlabRecord) data;
+		if (record._released) {
+			return;
+		}
+		if (removed) {
+			cache.setData(decode(record), cache.size());
+		}
+		record._released = true;
+		_allocator.free(record);
+	}
+
+	@Override
+	protected Object getData(CacheModel cache) {
+		Object data = readData(cache);
+		if (data instanceof SerializedData) {
+			return ((SerializedData) data).getBytes();
+		}
+		return data;
+	}
+
+	@Override
+	public InputStream getAsStream(CacheModel cacheModel) {
+		Object data = readData(cacheModel);
+		if (data == null) {
+			// 数据已被替换或清除，不能按堆内存数据读取已释放的块
+			return null;
+		}
+		if (data instanceof byte[]) {
+			return new ByteArrayInputStream((byte[]) data);
+		}
+		return super.getAsStream(cacheModel);
+	}
+
+	@Override
+	public String getAsString(CacheModel cacheModel) {
+		Object data = readData(cacheModel);
+		if (data == null) {
+			return null;
+		}
+		if (data instanceof String) {
+			return (String) data;
+		}
+		if (data instanceof byte[]) {
+			return new String((byte[]) data, UTF8);
+		}
+		return super.getAsString(cacheModel);
+	}
+
+	@Override
+	public JSONObject getAsJSONObject(CacheModel cacheModel) {
+		Object data = readData(cacheModel);
+		if (data == null) {
+			return null;
+		}
+		if (data instanceof String) {
+			try {
+				return new JSONObject((String) data);
+			} catch (JSONException e) {
+				e.printStackTrace();
+				return null;
+			}
+		}
+		return super.getAsJSONObject(cacheModel);
+	}
+
+	@Override
+	public JSONArray getAsJSONArray(CacheModel cacheModel) {
+		Object data = readData(cacheModel);
+		if (data == null) {
+			return null;
+		}
+		if (data instanceof String) {
+			try {
+				return new JSONArray((String) data);
+			} catch (JSONException e) {
+				e.printStackTrace();
+				return null;
+			}
+		}
+		return super.getAsJSONArray(cacheModel);
+	}
+
+	@Override
+	public byte[] getAsBinary(CacheModel cacheModel) {
+		Object data = cacheModel.getData();
+		if (!(data instanceof SlabRecord)) {
+			return super.getAsBinary(cacheModel);
+		}
+		ReentrantLock lock = lockOf(cacheModel.getKey());
+		lock.lock();
+		try {
+			// 加锁后重新读取，数据可能已被移除并复制回堆内存
+			data = cacheModel.getData();
+			if (data instanceof SlabRecord) {
+				SlabRecord record = (SlabRecord) data;
+				if (record._released) {
+					return null;
+				}
+				return SlabAllocator.read(record);
+			}
+		} finally {
+			lock.unlock();
+		}
+		return data instanceof byte[] ? (byte[]) data : null;
+	}
+
+	@Override
+	public Object getAsObject(CacheModel cacheModel) {
+		Object data = readData(cacheModel);
+		if (data instanceof SerializedData) {
+			return ((SerializedData) data).asObject();
+		}
+		return data;
+	}
+
+	/**
+	 * 读取数据，堆外内存中的数据复制为原始类型（byte[]或String）
+	 *
+	 * @return 数据已被替换或清除时返回null
+	 */
+	private Object readData(CacheModel cacheModel) {
+		Object data = cacheModel.getData();
+		if (!(data instanceof SlabRecord)) {
+			return data;
+		}
+		ReentrantLock lock = lockOf(cacheModel.getKey());
+		lock.lock();
+		try {
+			data = cacheModel.getData();
+			if (data instanceof SlabRecord) {
+				SlabRecord record = (SlabRecord) data;
+				if (record._released) {
+					return null;
+				}
+				return decode(record);
+			}
+			return data;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private static Object decode(SlabRecord record) {
+		byte[] bytes = SlabAllocator.read(record);
+		return record.isString() ? new String(bytes, UTF8) : bytes;
+	}
+
+	/**
+	 * 直接编码到堆外内存中，不创建编码后的数组
+	 */
+	private static void writeString(SlabRecord record, String str) {
+		CharsetEncoder encoder = UTF8_ENCODER.get();
+		encoder.reset();
+		ByteBuffer out = SlabAllocator.slice(record);
+		encoder.encode(CharBuffer.wrap(str), out, true);
+		encoder.flush(out);
+	}
+}
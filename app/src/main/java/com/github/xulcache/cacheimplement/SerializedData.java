@@ -0,0 +1,86 @@
+package com.github.xulcache.cacheimplement;
+
+import android.graphics.Bitmap;
+
+import com.github.xulcache.utils.XulBitmapUtil;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayInputStream;
+import java.io.ObjectInputStream;
+import java.nio.charset.Charset;
+
+/**
+ * 从文件缓存读取到内存缓存中的数据，保存文件中的原始字节，
+ * 读取时与文件缓存一样按需要的类型解析（String为UTF-8编码，对象为Java序列化，Bitmap为图片编码）
+ */
+public final class SerializedData {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final byte[] _bytes;
+
+	public SerializedData(byte[] bytes) {
+		_bytes = bytes;
+	}
+
+	public byte[] getBytes() {
+		return _bytes;
+	}
+
+	public int getLength() {
+		return _bytes.length;
+	}
+
+	public String asString() {
+		return new String(_bytes, UTF8);
+	}
+
+	public JSONObject asJSONObject() {
+		try {
+			return new JSONObject(asString());
+		} catch (JSONException e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	public JSONArray asJSONArray() {
+		try {
+			return new JSONArray(asString());
+		} catch (JSONException e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	/**
+	 * 按Java序列化格式读取对象
+	 *
+	 * @return 不是序列化数据时返回null
+	 */
+	public Object asObject() {
+		ObjectInputStream ois = null;
+		try {
+			ois = new ObjectInputStream(new ByteArrayInputStream(_bytes));
+			return ois.readObject();
+		} catch (Exception e) {
+			e.printStackTrace();
+			return null;
+		} finally {
+			if (ois != null) {
+				try {
+					ois.close();
+				} catch (Exception e) {
+					e.printStackTrace();
+				}
+			}
+		}
+	}
+
+	public Bitmap asBitmap() {
+		return XulBitmapUtil.bytes2Bitmap(_bytes);
+	}
+}
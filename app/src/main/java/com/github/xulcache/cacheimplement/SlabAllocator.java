@@ -0,0 +1,201 @@
+package com.github.xulcache.cacheimplement;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+
+/**
+ * 堆外内存分配器：以固定大小的直接内存（slab）为单位申请内存，每个slab按一种块大小切分，
+ * 块大小按每个2的幂区间两级划分，空闲块由各slab的空闲列表管理。
+ * slab中的块全部释放后归还到空闲slab池，可以重新切分给其他块大小使用。
+ * 超过slab大小一半的数据使用整个slab作为一个块，超过slab大小的数据不分配。
+ */
+final class SlabAllocator {
+
+	private static final int MIN_SLAB_SIZE = 16 * 1024;
+	private static final int MAX_SLAB_SIZE = 256 * 1024;
+	private static final int MIN_CHUNK_SIZE = 64;
+
+	private final int _slabSize;
+	private final int[] _chunkSizes;
+	private final int _maxSlabCount;
+	private int _slabCount;
+	private final ArrayList<Slab> _emptySlabs = new ArrayList<Slab>();
+	/**
+	 * 每种块大小中还有空闲块的slab
+	 */
+	private final ArrayList<ArrayList<Slab>> _partialSlabs;
+
+	/**
+	 * @param maxMemory 数据占用的内存上限。slab大小按上限的1/64选取，保证各种块大小都能分到slab；
+	 *                  额外保留约25%的slab（不超过块大小种类数），减少不同块大小之间争夺slab时的回收
+	 */
+	SlabAllocator(long maxMemory) {
+		long slabSize = Long.highestOneBit(Math.max(1, maxMemory / 64));
+		_slabSize = (int) Math.max(MIN_SLAB_SIZE, Math.min(MAX_SLAB_SIZE, slabSize));
+
+		ArrayList<Integer> sizes = new ArrayList<Integer>();
+		int maxChunkSize = _slabSize / 2;
+		for (int size = MIN_CHUNK_SIZE; size <= maxChunkSize; size <<= 1) {
+			sizes.add(size);
+			if (size + size / 2 <= maxChunkSize) {
+				sizes.add(size + size / 2);
+			}
+		}
+		// 大数据块，每个slab只切分出一块
+		sizes.add(_slabSize);
+		_chunkSizes = new int[sizes.size()];
+		_partialSlabs = new ArrayList<ArrayList<Slab>>(_chunkSizes.length);
+		for (int i = 0; i < _chunkSizes.length; i++) {
+			_chunkSizes[i] = sizes.get(i);
+			_partialSlabs.add(new ArrayList<Slab>());
+		}
+
+		long slabCount = (maxMemory + _slabSize - 1) / _slabSize;
+		long reserved = Math.min(_chunkSizes.length, Math.max(1, slabCount / 4));
+		_maxSlabCount = (int) Math.min(Integer.MAX_VALUE, slabCount + reserved);
+	}
+
+	/**
+	 * 能分配的最大数据长度
+	 */
+	int getMaxLength() {
+		return _slabSize;
+	}
+
+	int getSlabSize() {
+		return _slabSize;
+	}
+
+	/**
+	 * 分配能保存length字节数据的块，length不能超过{@link #getMaxLength()}
+	 *
+	 * @return 没有可用的内存时返回null
+	 */
+	SlabRecord allocate(int length, boolean isString) {
+		int sizeClass = sizeClassOf(length);
+		synchronized (this) {
+			ArrayList<Slab> partialSlabs = _partialSlabs.get(sizeClass);
+			Slab slab;
+			if (partialSlabs.isEmpty()) {
+				slab = takeEmptySlab();
+				if (slab == null) {
+					return null;
+				}
+				slab.format(sizeClass, _chunkSizes[sizeClass], _slabSize);
+				partialSlabs.add(slab);
+			} else {
+				slab = partialSlabs.get(partialSlabs.size() - 1);
+			}
+			int chunk = slab.freeChunks[--slab.freeCount];
+			if (slab.freeCount == 0) {
+				partialSlabs.remove(partialSlabs.size() - 1);
+			}
+			return new SlabRecord(slab.buffer, slab, chunk * slab.chunkSize, length, slab.chunkSize,
+			                      isString);
+		}
+	}
+
+	/**
+	 * 释放块，释放后块可能立即被其他数据使用
+	 */
+	void free(SlabRecord record) {
+		Slab slab = record._slab;
+		synchronized (this) {
+			slab.freeChunks[slab.freeCount++] = record._offset / slab.chunkSize;
+			ArrayList<Slab> partialSlabs = _partialSlabs.get(slab.sizeClass);
+			if (slab.freeCount == slab.chunkCount) {
+				// slab已全部空闲，归还到空闲池
+				partialSlabs.remove(slab);
+				_emptySlabs.add(slab);
+			} else if (slab.freeCount == 1) {
+				partialSlabs.add(slab);
+			}
+		}
+	}
+
+	/**
+	 * 已申请的slab占用的内存
+	 */
+	synchronized long getAllocatedMemory() {
+		return (long) _slabCount * _slabSize;
+	}
+
+	static void write(SlabRecord record, byte[] data) {
+		ByteBuffer buffer = record._buffer.duplicate();
+		buffer.position(record._offset);
+		buffer.put(data, 0, record.getLength());
+	}
+
+	/**
+	 * 获取数据所在的可写区域，用于直接编码写入
+	 */
+	static ByteBuffer slice(SlabRecord record) {
+		ByteBuffer buffer = record._buffer.duplicate();
+		buffer.limit(record._offset + record.getLength());
+		buffer.position(record._offset);
+		return buffer;
+	}
+
+	static byte[] read(SlabRecord record) {
+		byte[] data = new byte[record.getLength()];
+		ByteBuffer buffer = record._buffer.duplicate();
+		buffer.position(record._offset);
+		buffer.get(data);
+		return data;
+	}
+
+	private Slab takeEmptySlab() {
+		if (!_emptySlabs.isEmpty()) {
+			return _emptySlabs.remove(_emptySlabs.size() - 1);
+		}
+		if (_slabCount >= _maxSlabCount) {
+			return null;
+		}
+		_slabCount++;
+		return new Slab(ByteBuffer.allocateDirect(_slabSize));
+	}
+
+	private int sizeClassOf(int length) {
+		int low = 0;
+		int high = _chunkSizes.length - 1;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (_chunkSizes[mid] < length) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	static final class Slab {
+		final ByteBuffer buffer;
+		int sizeClass;
+		int chunkSize;
+		int chunkCount;
+		int[] freeChunks;
+		int freeCount;
+
+		Slab(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		/**
+		 * 按指定块大小重新切分
+		 */
+		void format(int sizeClass, int chunkSize, int slabSize) {
+			this.sizeClass = sizeClass;
+			this.chunkSize = chunkSize;
+			chunkCount = slabSize / chunkSize;
+			if (freeChunks == null || freeChunks.length < chunkCount) {
+				freeChunks = new int[chunkCount];
+			}
+			// 倒序放入，从slab起始位置开始分配
+			for (int i = 0; i < chunkCount; i++) {
+				freeChunks[i] = chunkCount - 1 - i;
+			}
+			freeCount = chunkCount;
+		}
+	}
+}
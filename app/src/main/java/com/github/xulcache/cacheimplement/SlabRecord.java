@@ -0,0 +1,52 @@
+package com.github.xulcache.cacheimplement;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 堆外内存缓存中一条数据的位置
+ */
+public final class SlabRecord {
+
+	final ByteBuffer _buffer;
+	final SlabAllocator.Slab _slab;
+	final int _offset;
+	private final int _length;
+	private final int _capacity;
+	private final boolean _isString;
+
+	/**
+	 * 数据已释放，所在的块可能已被其他数据使用，需在key锁内访问
+	 */
+	boolean _released;
+
+	SlabRecord(ByteBuffer buffer, SlabAllocator.Slab slab, int offset, int length, int capacity,
+	           boolean isString) {
+		_buffer = buffer;
+		_slab = slab;
+		_offset = offset;
+		_length = length;
+		_capacity = capacity;
+		_isString = isString;
+	}
+
+	/**
+	 * 数据长度
+	 */
+	public int getLength() {
+		return _length;
+	}
+
+	/**
+	 * 数据占用的堆外内存大小（所在块的大小）
+	 */
+	public int getCapacity() {
+		return _capacity;
+	}
+
+	/**
+	 * 原始数据是否为String（以UTF-8编码保存）
+	 */
+	public boolean isString() {
+		return _isString;
+	}
+}
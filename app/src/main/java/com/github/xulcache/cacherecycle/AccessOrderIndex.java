@@ -0,0 +1,109 @@
+package com.github.xulcache.cacherecycle;
+
+import com.github.xulcache.CacheModel;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 按访问顺序排列的缓存索引，队首为最久未访问的数据，获取回收对象的复杂度为O(1)
+ */
+public class AccessOrderIndex {
+
+    private final LinkedHashMap<String, CacheModel> _index =
+            new LinkedHashMap<String, CacheModel>(16, 0.75f, true);
+    private final ReentrantLock _lock = new ReentrantLock();
+    /**
+     * 索引被占用时未能调整顺序的访问，下次获取锁时按访问顺序补做
+     */
+    private final ConcurrentLinkedQueue<String> _pendingTouches = new ConcurrentLinkedQueue<String>();
+
+    /**
+     * 添加或更新数据，并将其移动到队尾
+     */
+    public void add(CacheModel cache) {
+        _lock.lock();
+        try {
+            drainPendingTouches();
+            _index.put(cache.getKey(), cache);
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    /**
+     * 记录一次访问，将数据移动到队尾
+     * 读操作远多于写操作，索引被占用时不等待，记录下来由下一个获取锁的操作补做调整，
+     * 读取队首前所有访问都已调整，队首始终是最久未访问的数据
+     */
+    public void touch(CacheModel cache) {
+        if (!_lock.tryLock()) {
+            _pendingTouches.offer(cache.getKey());
+            if (!_lock.tryLock()) {
+                return;
+            }
+        }
+        try {
+            drainPendingTouches();
+            _index.get(cache.getKey());
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    /**
+     * 补做被推迟的访问调整，需在持有锁时调用，已移除的key忽略
+     */
+    private void drainPendingTouches() {
+        String key;
+        while ((key = _pendingTouches.poll()) != null) {
+            _index.get(key);
+        }
+    }
+
+    public CacheModel remove(String key) {
+        _lock.lock();
+        try {
+            return _index.remove(key);
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    /**
+     * 获取最久未访问的数据
+     *
+     * @return 最久未访问的数据，索引为空时返回null
+     */
+    public CacheModel eldest() {
+        _lock.lock();
+        try {
+            drainPendingTouches();
+            Iterator<CacheModel> iterator = _index.values().iterator();
+            return iterator.hasNext() ? iterator.next() : null;
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    public int size() {
+        _lock.lock();
+        try {
+            return _index.size();
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    public void clear() {
+        _lock.lock();
+        try {
+            _pendingTouches.clear();
+            _index.clear();
+        } finally {
+            _lock.unlock();
+        }
+    }
+}
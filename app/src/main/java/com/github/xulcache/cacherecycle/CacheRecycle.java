@@ -3,7 +3,7 @@ package com.github.xulcache.cacherecycle;
 import com.github.xulcache.CacheDomain;
 import com.github.xulcache.CacheModel;
 
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.Arrays;
 import java.util.concurrent.ConcurrentMap;
 
 public class CacheRecycle {
@@ -12,25 +12,63 @@ public class CacheRecycle {
     public static final int STRATEGY_NO_RECYCLE = 0x0001;
     public static final int STRATEGY_EXPIRED = 0x0002;
     public static final int STRATEGY_RECENTLY_UNUSED = 0x0003;
+    public static final int STRATEGY_TINY_LFU = 0x0004;
+
+    private static final Strategies EMPTY_STRATEGIES =
+            new Strategies(new RecycleStrategy[0], new String[0]);
 
     private CacheDomain _cacheDomain;
-    private ConcurrentLinkedQueue<RecycleStrategy> _strategies;
+    /**
+     * 回收的缓存（分段）的数据数量上限，回收策略按该数量预先分配空间
+     */
+    private volatile int _maximumCount;
+    /**
+     * 回收策略列表及其名称，写时复制，缓存读写时分发回调不需要加锁和创建迭代器
+     */
+    private volatile Strategies _strategies;
 
     public CacheRecycle(CacheDomain cacheDomain) {
         _cacheDomain = cacheDomain;
-        _strategies = new ConcurrentLinkedQueue<RecycleStrategy>();
+        _strategies = EMPTY_STRATEGIES;
+    }
+
+    /**
+     * 设置回收的缓存的数据数量上限，需在添加回收策略前设置
+     */
+    public void setMaximumCount(int maximumCount) {
+        _maximumCount = maximumCount;
     }
 
     /**
      * 添加回收策略 回收时会按照添加策略的先后顺序依次回收，直到找到下一个回收对象
      */
-    public void addRecycleStrategy(int recycleStrategy) {
+    public synchronized void addRecycleStrategy(int recycleStrategy) {
+        if (containsRecycleStrategy(recycleStrategy)) {
+            return;
+        }
         RecycleStrategy newStrategy = getRecycleStrategy(recycleStrategy);
-        if (newStrategy != null && !_strategies.contains(newStrategy)) {
-            _strategies.add(newStrategy);
+        if (newStrategy != null) {
+            addRecycleStrategy(newStrategy);
         }
     }
 
+    /**
+     * 添加自定义回收策略
+     */
+    public synchronized void addRecycleStrategy(RecycleStrategy recycleStrategy) {
+        RecycleStrategy[] current = _strategies.strategies;
+        for (RecycleStrategy strategy : current) {
+            if (strategy == recycleStrategy) {
+                return;
+            }
+        }
+        RecycleStrategy[] strategies = Arrays.copyOf(current, current.length + 1);
+        strategies[strategies.length - 1] = recycleStrategy;
+        String[] names = Arrays.copyOf(_strategies.names, current.length + 1);
+        names[names.length - 1] = nameOf(recycleStrategy);
+        _strategies = new Strategies(strategies, names);
+    }
+
     private RecycleStrategy getRecycleStrategy(int recycleStrategyFlag) {
         RecycleStrategy strategy = null;
         switch (recycleStrategyFlag) {
@@ -43,6 +81,9 @@ public class CacheRecycle {
             case STRATEGY_NO_RECYCLE:
                 strategy = new NoRecycleStrategy();
                 break;
+            case STRATEGY_TINY_LFU:
+                strategy = new TinyLfuStrategy(_maximumCount);
+                break;
             default:
                 strategy = null;
                 break;
@@ -50,29 +91,162 @@ public class CacheRecycle {
         return strategy;
     }
 
-    public void removeRecycleStrategy(int recycleStrategy) {
-        _strategies.remove(getRecycleStrategy(recycleStrategy));
+    private static Class<? extends RecycleStrategy> getRecycleStrategyClass(int recycleStrategyFlag) {
+        switch (recycleStrategyFlag) {
+            case STRATEGY_EXPIRED:
+                return ExpireStrategy.class;
+            case STRATEGY_RECENTLY_UNUSED:
+                return RecentlyUnusedStrategy.class;
+            case STRATEGY_NO_RECYCLE:
+                return NoRecycleStrategy.class;
+            case STRATEGY_TINY_LFU:
+                return TinyLfuStrategy.class;
+            default:
+                return null;
+        }
+    }
+
+    public synchronized void removeRecycleStrategy(int recycleStrategy) {
+        Class<? extends RecycleStrategy> strategyClass = getRecycleStrategyClass(recycleStrategy);
+        RecycleStrategy[] current = _strategies.strategies;
+        RecycleStrategy[] strategies = new RecycleStrategy[current.length];
+        String[] names = new String[current.length];
+        int count = 0;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i].getClass() != strategyClass) {
+                strategies[count] = current[i];
+                names[count] = _strategies.names[i];
+                count++;
+            }
+        }
+        _strategies = new Strategies(Arrays.copyOf(strategies, count), Arrays.copyOf(names, count));
+    }
+
+    public synchronized void clear() {
+        _strategies = EMPTY_STRATEGIES;
+    }
+
+    /**
+     * 获取当前的回收策略列表，按回收时的查找顺序排列，返回的数组不可修改
+     */
+    public RecycleStrategy[] getRecycleStrategies() {
+        return _strategies.strategies;
+    }
+
+    /**
+     * 获取回收策略的名称（用于统计），名称在添加策略时计算一次
+     */
+    public String getRecycleStrategyName(RecycleStrategy recycleStrategy) {
+        Strategies strategies = _strategies;
+        for (int i = 0; i < strategies.strategies.length; i++) {
+            if (strategies.strategies[i] == recycleStrategy) {
+                return strategies.names[i];
+            }
+        }
+        // 策略已被移除
+        return nameOf(recycleStrategy);
     }
 
-    public void clear() {
-        _strategies.clear();
+    /**
+     * 策略的类名，匿名类没有简单类名，使用完整类名
+     */
+    private static String nameOf(RecycleStrategy recycleStrategy) {
+        Class<?> strategyClass = recycleStrategy.getClass();
+        String name = strategyClass.getSimpleName();
+        return name.length() > 0 ? name : strategyClass.getName();
     }
 
     public boolean containsRecycleStrategy(int recycleStrategy) {
-        return _strategies.contains(getRecycleStrategy(recycleStrategy));
+        Class<? extends RecycleStrategy> strategyClass = getRecycleStrategyClass(recycleStrategy);
+        for (RecycleStrategy strategy : _strategies.strategies) {
+            if (strategy.getClass() == strategyClass) {
+                return true;
+            }
+        }
+        return false;
     }
 
     public CacheModel recycle(ConcurrentMap<String, CacheModel> caches) {
-        CacheModel cache = null;
-        for (RecycleStrategy strategy : _strategies) {
-            cache = strategy.findRecycledCache(caches.values());
-            if (cache != null) {
-                caches.remove(cache.getKey());
-                break;
+        return recycle(caches, null);
+    }
+
+    /**
+     * 按照回收策略查找并移除下一个回收对象
+     *
+     * @param caches      缓存数据集合
+     * @param accessOrder 按访问顺序排列的缓存索引，为null时回收策略需遍历缓存数据集合
+     * @return 被移除的缓存数据，若未找到，则返回null
+     */
+    public CacheModel recycle(ConcurrentMap<String, CacheModel> caches,
+                              AccessOrderIndex accessOrder) {
+        CacheModel cache = findRecycledCache(caches, accessOrder);
+        if (cache != null) {
+            caches.remove(cache.getKey());
+            if (accessOrder != null) {
+                accessOrder.remove(cache.getKey());
             }
+            onCacheRemoved(cache);
         }
 
         return cache;
     }
-}
 
+    /**
+     * 按照回收策略查找下一个回收对象，但不移除，由调用方负责移除并更新计数
+     *
+     * @param caches      缓存数据集合
+     * @param accessOrder 按访问顺序排列的缓存索引，为null时回收策略需遍历缓存数据集合
+     * @return 下一个回收对象，若未找到，则返回null
+     */
+    public CacheModel findRecycledCache(ConcurrentMap<String, CacheModel> caches,
+                                        AccessOrderIndex accessOrder) {
+        for (RecycleStrategy strategy : _strategies.strategies) {
+            CacheModel cache = strategy.findRecycledCache(caches.values(), accessOrder);
+            if (cache != null) {
+                return cache;
+            }
+        }
+        return null;
+    }
+
+    // =======================================
+    // ============ 缓存事件分发 ===============
+    // =======================================
+
+    public void onCachePut(CacheModel cache) {
+        for (RecycleStrategy strategy : _strategies.strategies) {
+            strategy.onCachePut(cache);
+        }
+    }
+
+    public void onCacheAccessed(CacheModel cache) {
+        for (RecycleStrategy strategy : _strategies.strategies) {
+            strategy.onCacheAccessed(cache);
+        }
+    }
+
+    public void onCacheRemoved(CacheModel cache) {
+        for (RecycleStrategy strategy : _strategies.strategies) {
+            strategy.onCacheRemoved(cache);
+        }
+    }
+
+    public void onCacheCleared() {
+        for (RecycleStrategy strategy : _strategies.strategies) {
+            strategy.onCacheCleared();
+        }
+    }
+
+    private static final class Strategies {
+        final RecycleStrategy[] strategies;
+        /**
+         * 与strategies一一对应的策略名称
+         */
+        final String[] names;
+
+        Strategies(RecycleStrategy[] strategies, String[] names) {
+            this.strategies = strategies;
+            this.names = names;
+        }
+    }
+}
@@ -14,7 +14,14 @@ class ExpireStrategy implements RecycleStrategy {
     }
 
     @Override
-    public CacheModel findRecycledCache(Collection<CacheModel> caches) {
+    public CacheModel findRecycledCache(Collection<CacheModel> caches, AccessOrderIndex accessOrder) {
+        if (accessOrder != null) {
+            // 同一缓存域内的数据有效期相同，读取队首前推迟的访问调整已补做，
+            // 过期顺序与访问顺序一致，队首未过期则没有过期数据
+            CacheModel eldest = accessOrder.eldest();
+            return _cacheDomain.isExpired(eldest) ? eldest : null;
+        }
+
         CacheModel cacheModel = null;
         for (CacheModel cache : caches) {
             if (cache != null && _cacheDomain.isExpired(cache)) {
@@ -25,4 +32,20 @@ class ExpireStrategy implements RecycleStrategy {
 
         return cacheModel;
     }
+
+    @Override
+    public void onCachePut(CacheModel cache) {
+    }
+
+    @Override
+    public void onCacheAccessed(CacheModel cache) {
+    }
+
+    @Override
+    public void onCacheRemoved(CacheModel cache) {
+    }
+
+    @Override
+    public void onCacheCleared() {
+    }
 }
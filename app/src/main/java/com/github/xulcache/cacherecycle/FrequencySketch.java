@@ -0,0 +1,157 @@
+package com.github.xulcache.cacherecycle;
+
+/**
+ * 基于Count-Min Sketch的访问频率估算器，每个计数器占4bit，最大计数为15
+ * 首次出现的key只记录在doorkeeper（布隆过滤器）中，避免只访问一次的数据占用计数器
+ * 计数总量达到采样上限后所有计数器减半，使频率随时间衰减
+ * 非线程安全，由调用方负责同步
+ */
+final class FrequencySketch {
+
+    private static final long[] SEEDS = new long[]{
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L,
+            0x9ae16a3b2f90404fL, 0xcbf29ce484222325L,
+    };
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final long ONE_MASK = 0x1111111111111111L;
+    private static final int MIN_CAPACITY = 16;
+    private static final int MAX_CAPACITY = 1 << 24;
+    /**
+     * 预先分配的最大容量，数量上限更大（如只限制大小）的缓存在数据增多时再扩大
+     */
+    private static final int MAX_INITIAL_CAPACITY = 1 << 14;
+
+    private long[] _table;
+    private long[] _doorkeeper;
+    private int _tableMask;
+    private int _sampleSize;
+    private int _size;
+
+    /**
+     * @param maximumSize 缓存的数据数量上限，按该数量一次分配计数器表，不随数据增加而重建
+     */
+    FrequencySketch(int maximumSize) {
+        int capacity = Math.min(Math.max(maximumSize, MIN_CAPACITY), MAX_INITIAL_CAPACITY);
+        int tableSize = Integer.highestOneBit(capacity - 1) << 1;
+        _table = new long[tableSize];
+        _doorkeeper = new long[tableSize];
+        _tableMask = tableSize - 1;
+        _sampleSize = 10 * tableSize;
+    }
+
+    /**
+     * 数据数量超过计数器表大小时扩大表。每次扩大一倍并将原表复制到两半，
+     * 下标只多取一位，每个key仍对应原来的计数，已有的频率信息不丢失
+     */
+    void ensureCapacity(int size) {
+        int capacity = Math.min(size, MAX_CAPACITY);
+        while (_table.length < capacity) {
+            int oldSize = _table.length;
+            long[] table = new long[oldSize << 1];
+            long[] doorkeeper = new long[oldSize << 1];
+            System.arraycopy(_table, 0, table, 0, oldSize);
+            System.arraycopy(_table, 0, table, oldSize, oldSize);
+            System.arraycopy(_doorkeeper, 0, doorkeeper, 0, oldSize);
+            System.arraycopy(_doorkeeper, 0, doorkeeper, oldSize, oldSize);
+            _table = table;
+            _doorkeeper = doorkeeper;
+            _tableMask = table.length - 1;
+            _sampleSize = 10 * table.length;
+        }
+    }
+
+    /**
+     * 估算key的访问频率
+     */
+    int frequency(int hash) {
+        int start = (hash & 3) << 2;
+        int frequency = Integer.MAX_VALUE;
+        for (int i = 0; i < 4; i++) {
+            int index = indexOf(hash, i);
+            int count = (int) ((_table[index] >>> ((start + i) << 2)) & 0xFL);
+            frequency = Math.min(frequency, count);
+        }
+        return frequency + (doorkeeperContains(hash) ? 1 : 0);
+    }
+
+    /**
+     * 记录一次访问
+     */
+    void increment(int hash) {
+        if (!doorkeeperPut(hash)) {
+            return;
+        }
+
+        int start = (hash & 3) << 2;
+        boolean added = false;
+        for (int i = 0; i < 4; i++) {
+            added |= incrementAt(indexOf(hash, i), start + i);
+        }
+
+        if (added && (++_size >= _sampleSize)) {
+            reset();
+        }
+    }
+
+    private boolean incrementAt(int index, int counter) {
+        int offset = counter << 2;
+        long mask = 0xFL << offset;
+        if ((_table[index] & mask) != mask) {
+            _table[index] += 1L << offset;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 所有计数器减半，并清空doorkeeper
+     */
+    private void reset() {
+        int count = 0;
+        for (int i = 0; i < _table.length; i++) {
+            count += Long.bitCount(_table[i] & ONE_MASK);
+            _table[i] = (_table[i] >>> 1) & RESET_MASK;
+            _doorkeeper[i] = 0;
+        }
+        _size = (_size - (count >>> 2)) >>> 1;
+    }
+
+    /**
+     * @return key已记录在doorkeeper中返回true，否则记录key并返回false
+     */
+    private boolean doorkeeperPut(int hash) {
+        boolean contains = true;
+        for (int i = 0; i < 2; i++) {
+            int bit = bitOf(hash, i);
+            long mask = 1L << (bit & 63);
+            int index = bit >>> 6;
+            if ((_doorkeeper[index] & mask) == 0) {
+                _doorkeeper[index] |= mask;
+                contains = false;
+            }
+        }
+        return contains;
+    }
+
+    private boolean doorkeeperContains(int hash) {
+        for (int i = 0; i < 2; i++) {
+            int bit = bitOf(hash, i);
+            if ((_doorkeeper[bit >>> 6] & (1L << (bit & 63))) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int bitOf(int hash, int i) {
+        long h = (hash + SEEDS[3 - i]) * SEEDS[3 - i];
+        h += h >>> 32;
+        return (int) h & ((_tableMask << 6) | 63);
+    }
+
+    private int indexOf(int hash, int i) {
+        long h = (hash + SEEDS[i]) * SEEDS[i];
+        h += h >>> 32;
+        return (int) h & _tableMask;
+    }
+}
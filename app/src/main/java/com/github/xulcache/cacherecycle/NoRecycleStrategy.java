@@ -8,7 +8,23 @@ import java.util.Collection;
 class NoRecycleStrategy implements RecycleStrategy {
 
     @Override
-    public CacheModel findRecycledCache(Collection<CacheModel> caches) {
+    public CacheModel findRecycledCache(Collection<CacheModel> caches, AccessOrderIndex accessOrder) {
         return null;
     }
+
+    @Override
+    public void onCachePut(CacheModel cache) {
+    }
+
+    @Override
+    public void onCacheAccessed(CacheModel cache) {
+    }
+
+    @Override
+    public void onCacheRemoved(CacheModel cache) {
+    }
+
+    @Override
+    public void onCacheCleared() {
+    }
 }
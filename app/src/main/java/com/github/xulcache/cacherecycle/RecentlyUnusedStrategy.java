@@ -8,7 +8,12 @@ import java.util.Collection;
 class RecentlyUnusedStrategy implements RecycleStrategy {
 
     @Override
-    public CacheModel findRecycledCache(Collection<CacheModel> caches) {
+    public CacheModel findRecycledCache(Collection<CacheModel> caches, AccessOrderIndex accessOrder) {
+        if (accessOrder != null) {
+            // 索引队首即为最久未访问的数据
+            return accessOrder.eldest();
+        }
+
         CacheModel oldestData = null;
         for (CacheModel cacheData : caches) {
             if (oldestData == null) {
@@ -22,4 +27,20 @@ class RecentlyUnusedStrategy implements RecycleStrategy {
 
         return oldestData;
     }
+
+    @Override
+    public void onCachePut(CacheModel cache) {
+    }
+
+    @Override
+    public void onCacheAccessed(CacheModel cache) {
+    }
+
+    @Override
+    public void onCacheRemoved(CacheModel cache) {
+    }
+
+    @Override
+    public void onCacheCleared() {
+    }
 }
@@ -1,16 +1,50 @@
 package com.github.xulcache.cacherecycle;
 
+import com.github.xulcache.CacheDomain;
 import com.github.xulcache.CacheModel;
 
 import java.util.Collection;
 
-interface RecycleStrategy {
+/**
+ * 缓存回收策略，可通过{@link CacheDomain#addRecycleStrategy(Factory)}注册自定义策略
+ */
+public interface RecycleStrategy {
 
     /**
-     * 根据特定的回收算法返回一个可回收的数据对象
+     * 根据特定的回收算法返回一个可回收的数据对象。
+     * 缓存分段时只在回收的分段中查找，caches和accessOrder只包含该分段的数据，
+     * 返回其他数据时不会被回收
      *
-     * @param caches 缓存数据集合
-     * @return 可回收对象，若未找到，则返回null
+     * @param caches      缓存（分段）中的数据，只读
+     * @param accessOrder 按访问顺序排列的缓存（分段）索引，可能为null
+     * @return 可回收对象，必须是caches中的数据，若未找到，则返回null
      */
-    CacheModel findRecycledCache(Collection<CacheModel> caches);
+    CacheModel findRecycledCache(Collection<CacheModel> caches, AccessOrderIndex accessOrder);
+
+    /**
+     * 缓存数据被保存（或被同key的数据替换）时回调
+     */
+    void onCachePut(CacheModel cache);
+
+    /**
+     * 缓存数据被访问时回调
+     */
+    void onCacheAccessed(CacheModel cache);
+
+    /**
+     * 缓存数据被移除或回收时回调
+     */
+    void onCacheRemoved(CacheModel cache);
+
+    /**
+     * 缓存数据被全部清除时回调
+     */
+    void onCacheCleared();
+
+    /**
+     * 回收策略工厂，缓存域的每一级缓存都会通过工厂创建独立的策略实例
+     */
+    interface Factory {
+        RecycleStrategy create(CacheDomain domain);
+    }
 }
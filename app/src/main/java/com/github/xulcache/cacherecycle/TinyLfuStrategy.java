@@ -0,0 +1,191 @@
+package com.github.xulcache.cacherecycle;
+
+import com.github.xulcache.CacheModel;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * W-TinyLFU回收策略
+ * 新数据先进入窗口区（LRU），窗口区溢出的数据成为候选数据，回收时候选数据需与主区
+ * （SLRU，由试用区和保护区组成）的待回收数据比较访问频率，频率更高者才能留在缓存中，
+ * 避免一次性的批量访问冲掉热点数据
+ */
+class TinyLfuStrategy implements RecycleStrategy {
+
+    /**
+     * 窗口区占全部数据数量的比例
+     */
+    private static final float WINDOW_RATIO = 0.01f;
+    /**
+     * 保护区占主区数据数量的比例
+     */
+    private static final float PROTECTED_RATIO = 0.8f;
+
+    private final LinkedHashMap<String, CacheModel> _window =
+            new LinkedHashMap<String, CacheModel>();
+    private final LinkedHashMap<String, CacheModel> _candidates =
+            new LinkedHashMap<String, CacheModel>();
+    private final LinkedHashMap<String, CacheModel> _probation =
+            new LinkedHashMap<String, CacheModel>();
+    private final LinkedHashMap<String, CacheModel> _protected =
+            new LinkedHashMap<String, CacheModel>();
+    private final FrequencySketch _sketch;
+    private final ReentrantLock _lock = new ReentrantLock();
+
+    /**
+     * @param maximumSize 缓存分段的数据数量上限，用于一次分配频率计数器
+     */
+    TinyLfuStrategy(int maximumSize) {
+        _sketch = new FrequencySketch(maximumSize);
+    }
+
+    @Override
+    public CacheModel findRecycledCache(Collection<CacheModel> caches, AccessOrderIndex accessOrder) {
+        _lock.lock();
+        try {
+            if (accessOrder != null) {
+                // 策略生效前已存在的数据没有频率信息，优先回收
+                CacheModel eldest = accessOrder.eldest();
+                if (eldest != null && !isTracked(eldest.getKey())) {
+                    return eldest;
+                }
+            }
+
+            CacheModel victim = eldest(_probation);
+            if (victim == null) {
+                victim = eldest(_protected);
+            }
+
+            CacheModel candidate = eldest(_candidates);
+            if (candidate == null) {
+                return victim == null ? eldest(_window) : victim;
+            }
+            if (victim == null) {
+                return candidate;
+            }
+
+            // 候选数据与主区待回收数据比较频率，淘汰频率较低者
+            if (_sketch.frequency(hash(candidate)) > _sketch.frequency(hash(victim))) {
+                _candidates.remove(candidate.getKey());
+                _probation.put(candidate.getKey(), candidate);
+                return victim;
+            }
+            return candidate;
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    @Override
+    public void onCachePut(CacheModel cache) {
+        _lock.lock();
+        try {
+            String key = cache.getKey();
+            _sketch.increment(hash(cache));
+            removeTracked(key);
+            _window.put(key, cache);
+
+            int totalCount = trackedCount();
+            int windowLimit = Math.max(1, (int) (totalCount * WINDOW_RATIO));
+            while (_window.size() > windowLimit) {
+                CacheModel overflow = eldest(_window);
+                _window.remove(overflow.getKey());
+                _candidates.put(overflow.getKey(), overflow);
+            }
+            _sketch.ensureCapacity(totalCount);
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    @Override
+    public void onCacheAccessed(CacheModel cache) {
+        // 与访问顺序索引相同，读操作竞争时放弃本次记录
+        if (!_lock.tryLock()) {
+            return;
+        }
+        try {
+            String key = cache.getKey();
+            _sketch.increment(hash(cache));
+            CacheModel tracked;
+            if ((tracked = _window.remove(key)) != null) {
+                _window.put(key, tracked);
+            } else if ((tracked = _protected.remove(key)) != null) {
+                _protected.put(key, tracked);
+            } else if ((tracked = _candidates.remove(key)) != null
+                       || (tracked = _probation.remove(key)) != null) {
+                // 候选区和试用区的数据再次被访问，晋升到保护区
+                // 未跟踪的数据可能已被并发移除，只记录频率，不加入队列
+                _protected.put(key, tracked);
+                demoteProtected();
+            }
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    @Override
+    public void onCacheRemoved(CacheModel cache) {
+        _lock.lock();
+        try {
+            removeTracked(cache.getKey());
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    @Override
+    public void onCacheCleared() {
+        _lock.lock();
+        try {
+            _window.clear();
+            _candidates.clear();
+            _probation.clear();
+            _protected.clear();
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    /**
+     * 保护区超出容量时，将最久未访问的数据降级到试用区
+     */
+    private void demoteProtected() {
+        int protectedLimit = Math.max(1,
+                (int) ((_probation.size() + _protected.size()) * PROTECTED_RATIO));
+        while (_protected.size() > protectedLimit) {
+            CacheModel demoted = eldest(_protected);
+            _protected.remove(demoted.getKey());
+            _probation.put(demoted.getKey(), demoted);
+        }
+    }
+
+    private void removeTracked(String key) {
+        if (_window.remove(key) == null && _candidates.remove(key) == null
+            && _probation.remove(key) == null) {
+            _protected.remove(key);
+        }
+    }
+
+    private boolean isTracked(String key) {
+        return _window.containsKey(key) || _candidates.containsKey(key)
+               || _probation.containsKey(key) || _protected.containsKey(key);
+    }
+
+    private int trackedCount() {
+        return _window.size() + _candidates.size() + _probation.size() + _protected.size();
+    }
+
+    private static CacheModel eldest(LinkedHashMap<String, CacheModel> queue) {
+        Iterator<CacheModel> iterator = queue.values().iterator();
+        return iterator.hasNext() ? iterator.next() : null;
+    }
+
+    private static int hash(CacheModel cache) {
+        int h = cache.getKey().hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
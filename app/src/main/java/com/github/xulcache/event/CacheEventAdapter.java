@@ -0,0 +1,34 @@
+package com.github.xulcache.event;
+
+import com.github.xulcache.CacheDomain;
+import com.github.xulcache.CacheModel;
+
+/**
+ * {@link CacheEventListener}的空实现，只需覆盖关心的事件
+ */
+public class CacheEventAdapter implements CacheEventListener {
+
+    @Override
+    public void onPut(CacheDomain domain, CacheModel cache) {
+    }
+
+    @Override
+    public void onGetHit(CacheDomain domain, String key, CacheModel cache) {
+    }
+
+    @Override
+    public void onGetMiss(CacheDomain domain, String key) {
+    }
+
+    @Override
+    public void onEvict(CacheDomain domain, CacheModel cache, int reason) {
+    }
+
+    @Override
+    public void onFileWrite(CacheDomain domain, CacheModel cache, long bytes, long durationNanos) {
+    }
+
+    @Override
+    public void onWriteBackFlush(CacheDomain domain, CacheModel cache) {
+    }
+}
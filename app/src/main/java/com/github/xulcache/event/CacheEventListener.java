@@ -0,0 +1,65 @@
+package com.github.xulcache.event;
+
+import com.github.xulcache.CacheDomain;
+import com.github.xulcache.CacheModel;
+
+/**
+ * 缓存操作事件监听，可注册到单个缓存域（{@link CacheDomain#addEventListener}）
+ * 或全局（{@link com.github.xulcache.CacheCenter#addEventListener}）。
+ * 回调在执行缓存操作的线程中同步调用，不应执行耗时操作；没有注册监听时不会产生任何事件对象。
+ * 多级缓存域中，回收和文件写入事件由发生事件的一级缓存（内存缓存或文件缓存）发出。
+ *
+ * @see CacheEventAdapter
+ * @see SampledEventListener
+ */
+public interface CacheEventListener {
+
+    /**
+     * 回收原因：数据已过期
+     */
+    int REASON_EXPIRED = 1;
+
+    /**
+     * 回收原因：超出容量限制，由回收策略（如最近最少使用）选出
+     */
+    int REASON_CAPACITY = 2;
+
+    /**
+     * 数据写入缓存
+     */
+    void onPut(CacheDomain domain, CacheModel cache);
+
+    /**
+     * 读取命中
+     *
+     * @param key 读取时使用的原始key
+     */
+    void onGetHit(CacheDomain domain, String key, CacheModel cache);
+
+    /**
+     * 读取未命中
+     *
+     * @param key 读取时使用的原始key
+     */
+    void onGetMiss(CacheDomain domain, String key);
+
+    /**
+     * 数据被回收，可在此释放数据占用的资源（如Bitmap）
+     *
+     * @param reason {@link #REASON_EXPIRED}或{@link #REASON_CAPACITY}
+     */
+    void onEvict(CacheDomain domain, CacheModel cache, int reason);
+
+    /**
+     * 数据写入文件完成
+     *
+     * @param bytes         写入的字节数
+     * @param durationNanos 写入耗时，以纳秒为单位
+     */
+    void onFileWrite(CacheDomain domain, CacheModel cache, long bytes, long durationNanos);
+
+    /**
+     * 写回缓存中的数据从内存写入文件缓存
+     */
+    void onWriteBackFlush(CacheDomain domain, CacheModel cache);
+}
@@ -0,0 +1,79 @@
+package com.github.xulcache.event;
+
+import com.github.xulcache.CacheDomain;
+import com.github.xulcache.CacheModel;
+
+/**
+ * 按固定间隔采样的事件监听，每sampleInterval个事件转发一个到被包装的监听。
+ * 回收事件不采样，全部转发，保证可以据此释放资源。
+ */
+public class SampledEventListener implements CacheEventListener {
+
+    private final CacheEventListener _listener;
+    private final int _sampleInterval;
+
+    /**
+     * 事件计数，多线程并发时允许少量计数丢失，采样不需要精确，避免在热点路径上使用原子操作
+     */
+    private int _eventCount;
+
+    /**
+     * @param sampleInterval 采样间隔，1表示转发全部事件
+     */
+    public SampledEventListener(CacheEventListener listener, int sampleInterval) {
+        if (sampleInterval < 1) {
+            throw new IllegalArgumentException("Sample interval must be positive.");
+        }
+        _listener = listener;
+        _sampleInterval = sampleInterval;
+    }
+
+    private boolean sample() {
+        int count = ++_eventCount;
+        if (count >= _sampleInterval) {
+            _eventCount = 0;
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void onPut(CacheDomain domain, CacheModel cache) {
+        if (sample()) {
+            _listener.onPut(domain, cache);
+        }
+    }
+
+    @Override
+    public void onGetHit(CacheDomain domain, String key, CacheModel cache) {
+        if (sample()) {
+            _listener.onGetHit(domain, key, cache);
+        }
+    }
+
+    @Override
+    public void onGetMiss(CacheDomain domain, String key) {
+        if (sample()) {
+            _listener.onGetMiss(domain, key);
+        }
+    }
+
+    @Override
+    public void onEvict(CacheDomain domain, CacheModel cache, int reason) {
+        _listener.onEvict(domain, cache, reason);
+    }
+
+    @Override
+    public void onFileWrite(CacheDomain domain, CacheModel cache, long bytes, long durationNanos) {
+        if (sample()) {
+            _listener.onFileWrite(domain, cache, bytes, durationNanos);
+        }
+    }
+
+    @Override
+    public void onWriteBackFlush(CacheDomain domain, CacheModel cache) {
+        if (sample()) {
+            _listener.onWriteBackFlush(domain, cache);
+        }
+    }
+}
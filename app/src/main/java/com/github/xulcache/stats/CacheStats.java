@@ -0,0 +1,148 @@
+package com.github.xulcache.stats;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 缓存域统计数据的快照，可通过{@link com.github.xulcache.CacheDomain#getStats()}获取
+ */
+public final class CacheStats {
+
+    public static final CacheStats EMPTY = new CacheStats(0, 0, 0,
+            Collections.<String, Long>emptyMap(), 0, 0, LatencySnapshot.EMPTY, LatencySnapshot.EMPTY);
+
+    private final long _hitCount;
+    private final long _missCount;
+    private final long _expirationCount;
+    private final Map<String, Long> _evictionCounts;
+    private final long _diskBytesRead;
+    private final long _diskBytesWritten;
+    private final LatencySnapshot _getLatency;
+    private final LatencySnapshot _putLatency;
+
+    CacheStats(long hitCount, long missCount, long expirationCount,
+               Map<String, Long> evictionCounts, long diskBytesRead, long diskBytesWritten,
+               LatencySnapshot getLatency, LatencySnapshot putLatency) {
+        _hitCount = hitCount;
+        _missCount = missCount;
+        _expirationCount = expirationCount;
+        _evictionCounts = evictionCounts;
+        _diskBytesRead = diskBytesRead;
+        _diskBytesWritten = diskBytesWritten;
+        _getLatency = getLatency;
+        _putLatency = putLatency;
+    }
+
+    /**
+     * 读取命中的次数
+     */
+    public long getHitCount() {
+        return _hitCount;
+    }
+
+    /**
+     * 读取未命中的次数（包括数据已过期）
+     */
+    public long getMissCount() {
+        return _missCount;
+    }
+
+    public long getRequestCount() {
+        return _hitCount + _missCount;
+    }
+
+    /**
+     * 命中率，没有读取时为1
+     */
+    public double getHitRate() {
+        long requestCount = getRequestCount();
+        return requestCount == 0 ? 1.0 : (double) _hitCount / requestCount;
+    }
+
+    /**
+     * 读取时发现数据已过期并移除的次数
+     */
+    public long getExpirationCount() {
+        return _expirationCount;
+    }
+
+    /**
+     * 被回收策略回收的总数量
+     */
+    public long getEvictionCount() {
+        long count = 0;
+        for (Long strategyCount : _evictionCounts.values()) {
+            count += strategyCount;
+        }
+        return count;
+    }
+
+    /**
+     * 按回收策略分类的回收数量，key为回收策略的类名
+     */
+    public Map<String, Long> getEvictionCountByStrategy() {
+        return _evictionCounts;
+    }
+
+    /**
+     * 从磁盘读取的缓存数据字节数
+     */
+    public long getDiskBytesRead() {
+        return _diskBytesRead;
+    }
+
+    /**
+     * 写入磁盘的缓存数据字节数
+     */
+    public long getDiskBytesWritten() {
+        return _diskBytesWritten;
+    }
+
+    /**
+     * 读取操作的耗时分布
+     */
+    public LatencySnapshot getGetLatency() {
+        return _getLatency;
+    }
+
+    /**
+     * 写入操作的耗时分布
+     */
+    public LatencySnapshot getPutLatency() {
+        return _putLatency;
+    }
+
+    /**
+     * 合并两份统计数据，用于多级缓存或多个缓存域的汇总
+     */
+    public CacheStats plus(CacheStats other) {
+        Map<String, Long> evictionCounts = new HashMap<String, Long>(_evictionCounts);
+        for (Map.Entry<String, Long> entry : other._evictionCounts.entrySet()) {
+            Long count = evictionCounts.get(entry.getKey());
+            evictionCounts.put(entry.getKey(),
+                               count == null ? entry.getValue() : count + entry.getValue());
+        }
+        return new CacheStats(_hitCount + other._hitCount,
+                              _missCount + other._missCount,
+                              _expirationCount + other._expirationCount,
+                              Collections.unmodifiableMap(evictionCounts),
+                              _diskBytesRead + other._diskBytesRead,
+                              _diskBytesWritten + other._diskBytesWritten,
+                              _getLatency.plus(other._getLatency),
+                              _putLatency.plus(other._putLatency));
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStats{hitCount=" + _hitCount
+               + ", missCount=" + _missCount
+               + ", expirationCount=" + _expirationCount
+               + ", evictionCount=" + _evictionCounts
+               + ", diskBytesRead=" + _diskBytesRead
+               + ", diskBytesWritten=" + _diskBytesWritten
+               + ", getLatency=" + _getLatency
+               + ", putLatency=" + _putLatency
+               + '}';
+    }
+}
@@ -0,0 +1,79 @@
+package com.github.xulcache.stats;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 以纳秒为单位记录耗时的分段直方图，每个2的幂区间分为4个桶，相对误差不超过25%
+ */
+final class LatencyHistogram {
+
+    /**
+     * 每个2的幂区间的桶数量（2^SUB_BUCKET_BITS）
+     */
+    private static final int SUB_BUCKET_BITS = 2;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * 记录的最大耗时为2^36纳秒（约68秒），超出的计入最后一个桶
+     */
+    private static final int MAX_EXPONENT = 36;
+    static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) << SUB_BUCKET_BITS;
+
+    /**
+     * 耗时记录的分段数量，少于计数器的分段，控制直方图的内存占用
+     */
+    private static final int STRIPES = 4;
+
+    private final AtomicLongArray _buckets = new AtomicLongArray(STRIPES * BUCKET_COUNT);
+    private final StripedCounter _totalNanos = new StripedCounter();
+
+    void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        int stripe = StripedCounter.stripe() & (STRIPES - 1);
+        _buckets.getAndIncrement(stripe * BUCKET_COUNT + bucketOf(nanos));
+        _totalNanos.add(nanos);
+    }
+
+    LatencySnapshot snapshot() {
+        long[] counts = new long[BUCKET_COUNT];
+        for (int stripe = 0; stripe < STRIPES; stripe++) {
+            int base = stripe * BUCKET_COUNT;
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                counts[i] += _buckets.get(base + i);
+            }
+        }
+        return new LatencySnapshot(counts, _totalNanos.sum());
+    }
+
+    void reset() {
+        for (int i = 0; i < _buckets.length(); i++) {
+            _buckets.set(i, 0);
+        }
+        _totalNanos.reset();
+    }
+
+    static int bucketOf(long nanos) {
+        if (nanos < SUB_BUCKETS * 2) {
+            // 小于8纳秒时每个值一个桶
+            return (int) nanos;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        int subBucket = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        int bucket = ((exponent - SUB_BUCKET_BITS + 1) << SUB_BUCKET_BITS) + subBucket;
+        return Math.min(bucket, BUCKET_COUNT - 1);
+    }
+
+    /**
+     * 桶内的最大耗时
+     */
+    static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS * 2) {
+            return bucket;
+        }
+        int exponent = (bucket >> SUB_BUCKET_BITS) + SUB_BUCKET_BITS - 1;
+        int subBucket = bucket & (SUB_BUCKETS - 1);
+        return ((long) (SUB_BUCKETS + subBucket + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+}
@@ -0,0 +1,87 @@
+package com.github.xulcache.stats;
+
+/**
+ * 耗时分布的快照
+ */
+public final class LatencySnapshot {
+
+    static final LatencySnapshot EMPTY = new LatencySnapshot(new long[LatencyHistogram.BUCKET_COUNT], 0);
+
+    private final long[] _counts;
+    private final long _count;
+    private final long _totalNanos;
+
+    LatencySnapshot(long[] counts, long totalNanos) {
+        _counts = counts;
+        _totalNanos = totalNanos;
+        long count = 0;
+        for (long bucketCount : counts) {
+            count += bucketCount;
+        }
+        _count = count;
+    }
+
+    /**
+     * 记录的次数
+     */
+    public long getCount() {
+        return _count;
+    }
+
+    /**
+     * 总耗时，以纳秒为单位
+     */
+    public long getTotalNanos() {
+        return _totalNanos;
+    }
+
+    /**
+     * 平均耗时，以纳秒为单位
+     */
+    public double getMeanNanos() {
+        return _count == 0 ? 0 : (double) _totalNanos / _count;
+    }
+
+    /**
+     * 耗时的百分位数，以纳秒为单位，返回所在桶的上限，相对误差不超过25%
+     *
+     * @param percentile 百分位，取值范围(0, 100]，如99表示p99
+     */
+    public long getPercentileNanos(double percentile) {
+        if (_count == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(_count * Math.min(percentile, 100) / 100);
+        if (rank < 1) {
+            rank = 1;
+        }
+        long seen = 0;
+        for (int i = 0; i < _counts.length; i++) {
+            seen += _counts[i];
+            if (seen >= rank) {
+                return LatencyHistogram.upperBoundOf(i);
+            }
+        }
+        return LatencyHistogram.upperBoundOf(_counts.length - 1);
+    }
+
+    /**
+     * 合并两个快照
+     */
+    public LatencySnapshot plus(LatencySnapshot other) {
+        long[] counts = new long[_counts.length];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = _counts[i] + other._counts[i];
+        }
+        return new LatencySnapshot(counts, _totalNanos + other._totalNanos);
+    }
+
+    @Override
+    public String toString() {
+        return "LatencySnapshot{count=" + _count
+               + ", meanNanos=" + (long) getMeanNanos()
+               + ", p50Nanos=" + getPercentileNanos(50)
+               + ", p99Nanos=" + getPercentileNanos(99)
+               + '}';
+    }
+}
@@ -0,0 +1,105 @@
+package com.github.xulcache.stats;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 缓存域的统计计数，所有计数使用分段计数器，记录时不加锁、不分配对象
+ */
+public final class StatsCounter {
+
+    private final StripedCounter _hitCount = new StripedCounter();
+    private final StripedCounter _missCount = new StripedCounter();
+    private final StripedCounter _expirationCount = new StripedCounter();
+    private final StripedCounter _diskBytesRead = new StripedCounter();
+    private final StripedCounter _diskBytesWritten = new StripedCounter();
+    private final LatencyHistogram _getLatency = new LatencyHistogram();
+    private final LatencyHistogram _putLatency = new LatencyHistogram();
+
+    /**
+     * 按回收策略名称分类的回收数量，回收策略数量很少，首次回收后不再创建计数器
+     */
+    private final ConcurrentMap<String, StripedCounter> _evictionCounts =
+            new ConcurrentHashMap<String, StripedCounter>();
+
+    public void recordHit() {
+        _hitCount.increment();
+    }
+
+    public void recordMiss() {
+        _missCount.increment();
+    }
+
+    /**
+     * 读取时发现数据已过期
+     */
+    public void recordExpiration() {
+        _expirationCount.increment();
+    }
+
+    /**
+     * 数据被回收策略回收
+     *
+     * @param strategy 回收策略名称
+     */
+    public void recordEviction(String strategy) {
+        StripedCounter counter = _evictionCounts.get(strategy);
+        if (counter == null) {
+            StripedCounter newCounter = new StripedCounter();
+            counter = _evictionCounts.putIfAbsent(strategy, newCounter);
+            if (counter == null) {
+                counter = newCounter;
+            }
+        }
+        counter.increment();
+    }
+
+    public void recordDiskRead(long bytes) {
+        _diskBytesRead.add(bytes);
+    }
+
+    public void recordDiskWrite(long bytes) {
+        _diskBytesWritten.add(bytes);
+    }
+
+    public void recordGetLatency(long nanos) {
+        _getLatency.record(nanos);
+    }
+
+    public void recordPutLatency(long nanos) {
+        _putLatency.record(nanos);
+    }
+
+    /**
+     * 获取当前统计数据的快照，计数在快照过程中仍可能变化，各项数据之间不保证严格一致
+     */
+    public CacheStats snapshot() {
+        Map<String, Long> evictionCounts = new HashMap<String, Long>();
+        for (Map.Entry<String, StripedCounter> entry : _evictionCounts.entrySet()) {
+            evictionCounts.put(entry.getKey(), entry.getValue().sum());
+        }
+        return new CacheStats(_hitCount.sum(), _missCount.sum(), _expirationCount.sum(),
+                              Collections.unmodifiableMap(evictionCounts),
+                              _diskBytesRead.sum(), _diskBytesWritten.sum(),
+                              _getLatency.snapshot(), _putLatency.snapshot());
+    }
+
+    /**
+     * 清零所有计数
+     */
+    public void reset() {
+        _hitCount.reset();
+        _missCount.reset();
+        _expirationCount.reset();
+        _diskBytesRead.reset();
+        _diskBytesWritten.reset();
+        _getLatency.reset();
+        _putLatency.reset();
+        for (StripedCounter counter : _evictionCounts.values()) {
+            counter.reset();
+        }
+    }
+}
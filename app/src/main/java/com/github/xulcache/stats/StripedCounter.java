@@ -0,0 +1,52 @@
+package com.github.xulcache.stats;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 分段计数器，不同线程累加到不同的缓存行，多线程同时计数时几乎没有竞争
+ */
+final class StripedCounter {
+
+    /**
+     * 分段数量，必须为2的幂
+     */
+    static final int STRIPES = 8;
+
+    /**
+     * 每个分段占用的long数量，保证各分段位于不同的缓存行（64字节）
+     */
+    private static final int PADDING = 8;
+
+    private final AtomicLongArray _cells = new AtomicLongArray(STRIPES * PADDING);
+
+    void increment() {
+        _cells.getAndIncrement(stripe() * PADDING);
+    }
+
+    void add(long delta) {
+        _cells.getAndAdd(stripe() * PADDING, delta);
+    }
+
+    long sum() {
+        long sum = 0;
+        for (int i = 0; i < STRIPES; i++) {
+            sum += _cells.get(i * PADDING);
+        }
+        return sum;
+    }
+
+    void reset() {
+        for (int i = 0; i < STRIPES; i++) {
+            _cells.set(i * PADDING, 0);
+        }
+    }
+
+    /**
+     * 根据当前线程选择分段，线程id连续分配，乘以黄金分割常数后取高位打散
+     */
+    static int stripe() {
+        long id = Thread.currentThread().getId();
+        int h = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+        return h >>> (32 - Integer.numberOfTrailingZeros(STRIPES));
+    }
+}
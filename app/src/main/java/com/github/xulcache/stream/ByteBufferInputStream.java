@@ -0,0 +1,69 @@
+package com.github.xulcache.stream;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * 以ByteBuffer（如内存映射的文件）为数据源的输入流，读取时不复制整个数据
+ */
+public class ByteBufferInputStream extends InputStream {
+	private final ByteBuffer _buffer;
+	private int _markPos;
+
+	public ByteBufferInputStream(ByteBuffer buffer) {
+		// 使用独立的读取位置，不影响原buffer
+		_buffer = buffer.duplicate();
+		_markPos = _buffer.position();
+	}
+
+	@Override
+	public int read() {
+		if (!_buffer.hasRemaining()) {
+			return -1;
+		}
+		return _buffer.get() & 0xFF;
+	}
+
+	@Override
+	public int read(byte[] buffer, int offset, int count) {
+		if (count == 0) {
+			return 0;
+		}
+		if (!_buffer.hasRemaining()) {
+			return -1;
+		}
+		count = Math.min(count, _buffer.remaining());
+		_buffer.get(buffer, offset, count);
+		return count;
+	}
+
+	@Override
+	public long skip(long n) {
+		if (n <= 0) {
+			return 0;
+		}
+		int skipped = (int) Math.min(n, _buffer.remaining());
+		_buffer.position(_buffer.position() + skipped);
+		return skipped;
+	}
+
+	@Override
+	public int available() {
+		return _buffer.remaining();
+	}
+
+	@Override
+	public boolean markSupported() {
+		return true;
+	}
+
+	@Override
+	public synchronized void mark(int readLimit) {
+		_markPos = _buffer.position();
+	}
+
+	@Override
+	public synchronized void reset() {
+		_buffer.position(_markPos);
+	}
+}
@@ -0,0 +1,45 @@
+package com.github.xulcache.stream;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 读写文件使用的缓冲区池，避免每次读写都创建新的缓冲区
+ */
+public final class ByteBufferPool {
+	public static final int BUFFER_SIZE = 64 * 1024;
+	private static final int MAX_POOLED_BUFFERS = 4;
+
+	private static final ConcurrentLinkedQueue<ByteBuffer> _buffers =
+		new ConcurrentLinkedQueue<ByteBuffer>();
+	private static final AtomicInteger _pooledCount = new AtomicInteger(0);
+
+	private ByteBufferPool() {
+	}
+
+	/**
+	 * 获取一个大小为{@link #BUFFER_SIZE}的缓冲区，缓冲区带有backing array，
+	 * 可以直接作为InputStream的读取目标，使用完毕后调用{@link #recycle(ByteBuffer)}归还
+	 */
+	public static ByteBuffer obtain() {
+		ByteBuffer buffer = _buffers.poll();
+		if (buffer == null) {
+			return ByteBuffer.allocate(BUFFER_SIZE);
+		}
+		_pooledCount.decrementAndGet();
+		buffer.clear();
+		return buffer;
+	}
+
+	public static void recycle(ByteBuffer buffer) {
+		if (buffer == null || buffer.capacity() != BUFFER_SIZE) {
+			return;
+		}
+		if (_pooledCount.incrementAndGet() > MAX_POOLED_BUFFERS) {
+			_pooledCount.decrementAndGet();
+			return;
+		}
+		_buffers.offer(buffer);
+	}
+}
@@ -0,0 +1,183 @@
+package com.github.xulcache.utils;
+
+import android.graphics.Bitmap;
+import android.os.Build;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 可复用Bitmap池，解码时作为BitmapFactory.Options.inBitmap使用，避免每次解码都分配新的像素内存。
+ * API 19以上按分配的内存大小匹配（可复用不小于所需内存的Bitmap），
+ * 以下版本只能复用尺寸和格式完全一致的Bitmap。
+ * 放入池中的Bitmap不能再被显示，超出容量时最早放入的Bitmap被回收。
+ */
+public class BitmapPool {
+
+    /**
+     * API 19以上复用的Bitmap不超过所需内存的倍数，避免小图占用大块内存
+     */
+    private static final int MAX_SIZE_MULTIPLE = 4;
+
+    private final long _maxSize;
+    private long _size;
+    /**
+     * 放入顺序，用于超出容量时回收最早放入的Bitmap
+     */
+    private final LinkedHashMap<Bitmap, Object> _bitmaps = new LinkedHashMap<Bitmap, Object>();
+    private final TreeMap<Integer, ArrayList<Bitmap>> _bySize = new TreeMap<Integer, ArrayList<Bitmap>>();
+    private final HashMap<String, ArrayList<Bitmap>> _byDimension = new HashMap<String, ArrayList<Bitmap>>();
+
+    /**
+     * @param maxSize 池中Bitmap占用内存的上限（byte）
+     */
+    public BitmapPool(long maxSize) {
+        _maxSize = maxSize;
+    }
+
+    /**
+     * 将不再使用的Bitmap放入池中
+     *
+     * @return 不可复用（不可变、已回收或超过容量）时返回false，调用者自行处理
+     */
+    public synchronized boolean put(Bitmap bitmap) {
+        if (bitmap == null || !bitmap.isMutable() || bitmap.isRecycled()
+            || bitmap.getConfig() == null || _bitmaps.containsKey(bitmap)) {
+            return false;
+        }
+        int byteCount = byteCountOf(bitmap);
+        if (byteCount > _maxSize) {
+            return false;
+        }
+        Object key = keyOf(bitmap);
+        _bitmaps.put(bitmap, key);
+        groupOf(key, true).add(bitmap);
+        _size += byteCount;
+        trimToSize(_maxSize);
+        return true;
+    }
+
+    /**
+     * 取出可以用于解码指定尺寸和格式的Bitmap
+     *
+     * @return 没有可复用的Bitmap时返回null
+     */
+    public synchronized Bitmap get(int width, int height, Bitmap.Config config) {
+        Object key;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            int byteCount = width * height * bytesPerPixel(config);
+            Integer ceiling = _bySize.ceilingKey(byteCount);
+            if (ceiling == null || ceiling > (long) byteCount * MAX_SIZE_MULTIPLE) {
+                return null;
+            }
+            key = ceiling;
+        } else {
+            key = dimensionKeyOf(width, height, config);
+        }
+        ArrayList<Bitmap> group = groupOf(key, false);
+        if (group == null) {
+            return null;
+        }
+        Bitmap bitmap = group.remove(group.size() - 1);
+        removeEmptyGroup(key, group);
+        _bitmaps.remove(bitmap);
+        _size -= byteCountOf(bitmap);
+        return bitmap;
+    }
+
+    /**
+     * 回收池中所有Bitmap
+     */
+    public synchronized void clear() {
+        trimToSize(0);
+    }
+
+    /**
+     * 池中Bitmap占用的内存
+     */
+    public synchronized long size() {
+        return _size;
+    }
+
+    public long maxSize() {
+        return _maxSize;
+    }
+
+    private void trimToSize(long maxSize) {
+        Iterator<Map.Entry<Bitmap, Object>> iterator = _bitmaps.entrySet().iterator();
+        while (_size > maxSize && iterator.hasNext()) {
+            Map.Entry<Bitmap, Object> entry = iterator.next();
+            iterator.remove();
+            Bitmap bitmap = entry.getKey();
+            ArrayList<Bitmap> group = groupOf(entry.getValue(), false);
+            group.remove(bitmap);
+            removeEmptyGroup(entry.getValue(), group);
+            _size -= byteCountOf(bitmap);
+            bitmap.recycle();
+        }
+    }
+
+    private ArrayList<Bitmap> groupOf(Object key, boolean create) {
+        ArrayList<Bitmap> group;
+        if (key instanceof Integer) {
+            group = _bySize.get(key);
+        } else {
+            group = _byDimension.get(key);
+        }
+        if (group == null && create) {
+            group = new ArrayList<Bitmap>();
+            if (key instanceof Integer) {
+                _bySize.put((Integer) key, group);
+            } else {
+                _byDimension.put((String) key, group);
+            }
+        }
+        return group;
+    }
+
+    private void removeEmptyGroup(Object key, ArrayList<Bitmap> group) {
+        if (!group.isEmpty()) {
+            return;
+        }
+        if (key instanceof Integer) {
+            _bySize.remove(key);
+        } else {
+            _byDimension.remove(key);
+        }
+    }
+
+    private static Object keyOf(Bitmap bitmap) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            return bitmap.getAllocationByteCount();
+        }
+        return dimensionKeyOf(bitmap.getWidth(), bitmap.getHeight(), bitmap.getConfig());
+    }
+
+    private static String dimensionKeyOf(int width, int height, Bitmap.Config config) {
+        return width + "x" + height + ":" + config;
+    }
+
+    private static int byteCountOf(Bitmap bitmap) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            return bitmap.getAllocationByteCount();
+        }
+        return bitmap.getByteCount();
+    }
+
+    /**
+     * 每个像素占用的字节数
+     */
+    static int bytesPerPixel(Bitmap.Config config) {
+        if (config == Bitmap.Config.ALPHA_8) {
+            return 1;
+        }
+        if (config == Bitmap.Config.RGB_565 || config == Bitmap.Config.ARGB_4444) {
+            return 2;
+        }
+        return 4;
+    }
+}
@@ -1,18 +1,36 @@
 package com.github.xulcache.utils;
 
+import java.security.DigestException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
-import java.util.WeakHashMap;
+import java.util.Collection;
 
 public class Md5Utils {
     public static String calMD5(String imageKey) {
-        String localCacheKey = calMD5(imageKey.getBytes());
+        KeyDigestCtx ctx = _keyDigestCtx.get();
+        String localCacheKey = ctx == null ? null : ctx.digest(imageKey);
         if (localCacheKey == null) {
             return imageKey;
         }
         return localCacheKey;
     }
 
+    /**
+     * 批量计算key的md5，所有key共用同一个计算上下文和编码缓冲区
+     *
+     * @return 与keys顺序一致的结果
+     */
+    public static String[] calMD5(Collection<String> keys) {
+        String[] cacheKeys = new String[keys.size()];
+        KeyDigestCtx ctx = _keyDigestCtx.get();
+        int i = 0;
+        for (String key : keys) {
+            String localCacheKey = ctx == null ? null : ctx.digest(key);
+            cacheKeys[i++] = localCacheKey == null ? key : localCacheKey;
+        }
+        return cacheKeys;
+    }
+
     private static char hexCharMap[] = new char[]{
             '0', '1', '2', '3',
             '4', '5', '6', '7',
@@ -20,54 +38,95 @@ public class Md5Utils {
             'C', 'D', 'E', 'F',
     };
 
-    private static class MessageDigestCtx {
-        MessageDigest digest;
-        char[] digestStr = new char[32];
+    /**
+     * 每个线程独立的md5计算上下文，不需要加锁
+     * 计算字符串key时复用编码缓冲区和摘要结果，除返回的字符串外不产生其他对象
+     */
+    private static class KeyDigestCtx {
+        final MessageDigest digest;
+        final byte[] digestVal = new byte[16];
+        final char[] digestStr = new char[32];
+        byte[] keyBytes = new byte[256];
 
-        public MessageDigestCtx(MessageDigest digest) {
+        KeyDigestCtx(MessageDigest digest) {
             this.digest = digest;
         }
 
-        public void reset() {
-            digest.reset();
+        String digest(String key) {
+            // 编码时可能扩容keyBytes，需先编码再取缓冲区
+            int length = encodeUtf8(key);
+            return digest(keyBytes, length);
         }
 
-        public char[] digest(byte[] data) {
-            byte[] digestVal = digest.digest(data);
+        String digest(byte[] data, int length) {
+            digest.reset();
+            digest.update(data, 0, length);
+            try {
+                digest.digest(digestVal, 0, 16);
+            } catch (DigestException e) {
+                e.printStackTrace();
+                return null;
+            }
             for (int i = 0; i < 16; ++i) {
                 int b = digestVal[i] & 0xFF;
-                digestStr[i * 2 + 0] = hexCharMap[b / 16];
-                digestStr[i * 2 + 1] = hexCharMap[b % 16];
+                digestStr[i * 2 + 0] = hexCharMap[b >>> 4];
+                digestStr[i * 2 + 1] = hexCharMap[b & 0xF];
             }
-            return digestStr;
+            return new String(digestStr);
         }
-    }
-    private static final WeakHashMap<Thread, MessageDigestCtx> _threadHashMap = new WeakHashMap<Thread, MessageDigestCtx>();
 
-    private static MessageDigestCtx getMD5() {
-        synchronized (_threadHashMap) {
-            Thread thread = Thread.currentThread();
-            MessageDigestCtx messageDigest = _threadHashMap.get(thread);
-            if (messageDigest == null) {
-                try {
-                    MessageDigest md5 = MessageDigest.getInstance("md5");
-                    MessageDigestCtx digestCtx = new MessageDigestCtx(md5);
-                    _threadHashMap.put(thread, digestCtx);
-                    return digestCtx;
-                } catch (NoSuchAlgorithmException e) {
-                    e.printStackTrace();
-                    return null;
+        /**
+         * 以UTF-8编码key，结果与String.getBytes()一致（无法编码的单个代理字符替换为'?'）
+         */
+        private int encodeUtf8(String key) {
+            int charCount = key.length();
+            if (keyBytes.length < charCount * 3) {
+                keyBytes = new byte[charCount * 3];
+            }
+            byte[] out = keyBytes;
+            int pos = 0;
+            for (int i = 0; i < charCount; i++) {
+                char c = key.charAt(i);
+                if (c < 0x80) {
+                    out[pos++] = (byte) c;
+                } else if (c < 0x800) {
+                    out[pos++] = (byte) (0xC0 | (c >> 6));
+                    out[pos++] = (byte) (0x80 | (c & 0x3F));
+                } else if (Character.isHighSurrogate(c) && i + 1 < charCount
+                           && Character.isLowSurrogate(key.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, key.charAt(++i));
+                    out[pos++] = (byte) (0xF0 | (codePoint >> 18));
+                    out[pos++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                    out[pos++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                    out[pos++] = (byte) (0x80 | (codePoint & 0x3F));
+                } else if (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+                    out[pos++] = '?';
+                } else {
+                    out[pos++] = (byte) (0xE0 | (c >> 12));
+                    out[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                    out[pos++] = (byte) (0x80 | (c & 0x3F));
                 }
             }
-            messageDigest.reset();
-            return messageDigest;
+            return pos;
         }
     }
 
+    private static final ThreadLocal<KeyDigestCtx> _keyDigestCtx = new ThreadLocal<KeyDigestCtx>() {
+        @Override
+        protected KeyDigestCtx initialValue() {
+            try {
+                return new KeyDigestCtx(MessageDigest.getInstance("md5"));
+            } catch (NoSuchAlgorithmException e) {
+                e.printStackTrace();
+                return null;
+            }
+        }
+    };
+
     public static String calMD5(byte[] data) {
-        MessageDigestCtx md5 = getMD5();
+        KeyDigestCtx md5 = _keyDigestCtx.get();
         if (md5 != null) {
-            return String.valueOf(md5.digest(data));
+            return md5.digest(data, data.length);
         } else {
             return null;
         }
@@ -6,8 +6,13 @@ import android.graphics.Canvas;
 import android.graphics.PixelFormat;
 import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
+import android.os.Build;
+
+import com.github.xulcache.stream.ByteBufferInputStream;
 
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.ByteBuffer;
 
 /**
  * 缓存辅助工具类
@@ -36,6 +41,104 @@ public class XulBitmapUtil {
         return BitmapFactory.decodeByteArray(b, 0, b.length);
     }
 
+    /**
+     * 从文件解码 Bitmap，由 BitmapFactory 直接读取文件，不复制到 byte[]
+     *
+     * @param reqWidth  需要的宽度，宽度或高度小于等于0时按原始尺寸解码
+     * @param reqHeight 需要的高度
+     * @param pool      解码时复用其中的 Bitmap，为null时不复用
+     */
+    public static Bitmap decodeFile(File file, int reqWidth, int reqHeight, BitmapPool pool) {
+        final String path = file.getPath();
+        return decode(new BitmapSource() {
+            @Override
+            Bitmap decode(BitmapFactory.Options options) {
+                return BitmapFactory.decodeFile(path, options);
+            }
+        }, reqWidth, reqHeight, pool);
+    }
+
+    /**
+     * 从 ByteBuffer（如内存映射的文件）解码 Bitmap，以流的方式读取，不复制到 byte[]
+     */
+    public static Bitmap decodeBuffer(final ByteBuffer buffer, int reqWidth, int reqHeight,
+                                      BitmapPool pool) {
+        return decode(new BitmapSource() {
+            @Override
+            Bitmap decode(BitmapFactory.Options options) {
+                return BitmapFactory.decodeStream(new ByteBufferInputStream(buffer), null, options);
+            }
+        }, reqWidth, reqHeight, pool);
+    }
+
+    /**
+     * 计算缩小解码的倍数，取保证宽高都不小于需要尺寸的最大的2的幂
+     */
+    public static int calculateInSampleSize(int width, int height, int reqWidth, int reqHeight) {
+        int inSampleSize = 1;
+        if (reqWidth <= 0 || reqHeight <= 0) {
+            return inSampleSize;
+        }
+        while (width / (inSampleSize * 2) >= reqWidth && height / (inSampleSize * 2) >= reqHeight) {
+            inSampleSize *= 2;
+        }
+        return inSampleSize;
+    }
+
+    private static Bitmap decode(BitmapSource source, int reqWidth, int reqHeight,
+                                 BitmapPool pool) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        boolean resize = reqWidth > 0 && reqHeight > 0;
+        if (resize || pool != null) {
+            // 先读取尺寸，确定缩小倍数和可复用的 Bitmap
+            options.inJustDecodeBounds = true;
+            source.decode(options);
+            if (options.outWidth <= 0 || options.outHeight <= 0) {
+                return null;
+            }
+            options.inJustDecodeBounds = false;
+            options.inSampleSize = calculateInSampleSize(options.outWidth, options.outHeight,
+                                                         reqWidth, reqHeight);
+        }
+        if (pool != null) {
+            // 解码结果需要可变，使用完后才能放回池中复用
+            options.inMutable = true;
+            options.inBitmap = obtainReusable(options, pool);
+        }
+        try {
+            return source.decode(options);
+        } catch (IllegalArgumentException e) {
+            if (options.inBitmap == null) {
+                throw e;
+            }
+            // 复用的 Bitmap 与图片不兼容，放回池中后重新解码
+            pool.put(options.inBitmap);
+            options.inBitmap = null;
+            return source.decode(options);
+        }
+    }
+
+    private static Bitmap obtainReusable(BitmapFactory.Options options, BitmapPool pool) {
+        int sampleSize = options.inSampleSize;
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.KITKAT) {
+            // API 19 以下只能复用尺寸相同的 JPEG 或 PNG 解码结果，且不能缩小解码
+            if (sampleSize > 1 || !("image/jpeg".equals(options.outMimeType)
+                                    || "image/png".equals(options.outMimeType))) {
+                return null;
+            }
+        }
+        sampleSize = Math.max(sampleSize, 1);
+        int width = (options.outWidth + sampleSize - 1) / sampleSize;
+        int height = (options.outHeight + sampleSize - 1) / sampleSize;
+        Bitmap.Config config = options.inPreferredConfig != null ? options.inPreferredConfig
+                                                                 : Bitmap.Config.ARGB_8888;
+        return pool.get(width, height, config);
+    }
+
+    private abstract static class BitmapSource {
+        abstract Bitmap decode(BitmapFactory.Options options);
+    }
+
     /**
      * Drawable 转 Bitmap
      */
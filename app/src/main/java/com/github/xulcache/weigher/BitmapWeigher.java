@@ -0,0 +1,49 @@
+package com.github.xulcache.weigher;
+
+import android.graphics.Bitmap;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+import android.os.Build;
+
+/**
+ * 按像素内存计算Bitmap和Drawable的大小，其他数据交给{@link DefaultWeigher}
+ */
+public class BitmapWeigher implements Weigher {
+
+    /**
+     * 无法获取像素格式的Drawable按ARGB_8888估算
+     */
+    private static final int BYTES_PER_PIXEL = 4;
+
+    @Override
+    public long weigh(Object data) {
+        if (data instanceof Bitmap || data instanceof Drawable) {
+            return estimate(data);
+        }
+        return DefaultWeigher.INSTANCE.weigh(data);
+    }
+
+    static long estimate(Object data) {
+        if (data instanceof BitmapDrawable) {
+            data = ((BitmapDrawable) data).getBitmap();
+        }
+        if (data instanceof Bitmap) {
+            Bitmap bitmap = (Bitmap) data;
+            if (bitmap.isRecycled()) {
+                return 0;
+            }
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+                // 复用的Bitmap实际分配的内存可能大于当前尺寸需要的内存
+                return bitmap.getAllocationByteCount();
+            }
+            return bitmap.getByteCount();
+        }
+        if (data instanceof Drawable) {
+            Drawable drawable = (Drawable) data;
+            long width = Math.max(drawable.getIntrinsicWidth(), 0);
+            long height = Math.max(drawable.getIntrinsicHeight(), 0);
+            return width * height * BYTES_PER_PIXEL;
+        }
+        return 0;
+    }
+}
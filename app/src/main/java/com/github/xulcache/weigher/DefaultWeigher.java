@@ -0,0 +1,87 @@
+package com.github.xulcache.weigher;
+
+import android.graphics.Bitmap;
+import android.graphics.drawable.Drawable;
+
+import com.github.xulcache.cacheimplement.LogRecord;
+import com.github.xulcache.cacheimplement.SerializedData;
+import com.github.xulcache.cacheimplement.SlabRecord;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.File;
+
+/**
+ * 默认的数据大小计算：
+ * String按UTF-8编码长度，byte[]、文件和日志记录按数据长度，
+ * Bitmap和Drawable按像素内存，JSON按估算的内存占用，其他对象按固定大小估算。
+ * 需要按序列化后的长度计算时使用{@link SerializedWeigher}
+ */
+public class DefaultWeigher implements Weigher {
+
+    public static final DefaultWeigher INSTANCE = new DefaultWeigher();
+
+    /**
+     * 无法计算大小的对象的估算大小
+     */
+    public static final long UNKNOWN_OBJECT_SIZE = 64;
+
+    @Override
+    public long weigh(Object data) {
+        long size = weighKnown(data);
+        return size >= 0 ? size : UNKNOWN_OBJECT_SIZE;
+    }
+
+    /**
+     * 计算已知类型的数据大小
+     *
+     * @return 无法计算的类型返回-1
+     */
+    static long weighKnown(Object data) {
+        if (data == null) {
+            return 0;
+        } else if (data instanceof String) {
+            return utf8Length((String) data);
+        } else if (data instanceof byte[]) {
+            return ((byte[]) data).length;
+        } else if (data instanceof File) {
+            return ((File) data).length();
+        } else if (data instanceof LogRecord) {
+            return ((LogRecord) data).getLength();
+        } else if (data instanceof SlabRecord) {
+            return ((SlabRecord) data).getCapacity();
+        } else if (data instanceof SerializedData) {
+            return ((SerializedData) data).getLength();
+        } else if (data instanceof Bitmap || data instanceof Drawable) {
+            return BitmapWeigher.estimate(data);
+        } else if (data instanceof JSONObject || data instanceof JSONArray) {
+            return JsonWeigher.estimate(data);
+        }
+        return -1;
+    }
+
+    /**
+     * 计算字符串UTF-8编码后的长度，不创建编码后的数组
+     */
+    public static long utf8Length(CharSequence str) {
+        long length = 0;
+        int count = str.length();
+        for (int i = 0; i < count; i++) {
+            char c = str.charAt(i);
+            if (c < 0x80) {
+                length += 1;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < count
+                       && Character.isLowSurrogate(str.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                // 不成对的代理字符编码为一个替换字符
+                length += (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) ? 1 : 3;
+            }
+        }
+        return length;
+    }
+}
@@ -0,0 +1,54 @@
+package com.github.xulcache.weigher;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.Iterator;
+
+/**
+ * 估算JSONObject和JSONArray的内存占用，其他数据交给{@link DefaultWeigher}。
+ * 按对象头、引用和字符数组的典型大小估算，不区分虚拟机实现
+ */
+public class JsonWeigher implements Weigher {
+
+    private static final int OBJECT_OVERHEAD = 64;  // JSONObject及其LinkedHashMap
+    private static final int ENTRY_OVERHEAD = 40;   // LinkedHashMap.Entry
+    private static final int ARRAY_OVERHEAD = 40;   // JSONArray及其ArrayList
+    private static final int REFERENCE_SIZE = 4;
+    private static final int STRING_OVERHEAD = 40;  // String对象及其char[]的对象头
+    private static final int BOXED_SIZE = 16;       // Integer、Long、Double、Boolean
+
+    @Override
+    public long weigh(Object data) {
+        if (data instanceof JSONObject || data instanceof JSONArray) {
+            return estimate(data);
+        }
+        return DefaultWeigher.INSTANCE.weigh(data);
+    }
+
+    static long estimate(Object value) {
+        if (value instanceof JSONObject) {
+            JSONObject object = (JSONObject) value;
+            long size = OBJECT_OVERHEAD;
+            Iterator<String> keys = object.keys();
+            while (keys.hasNext()) {
+                String key = keys.next();
+                size += ENTRY_OVERHEAD + estimate(key) + estimate(object.opt(key));
+            }
+            return size;
+        } else if (value instanceof JSONArray) {
+            JSONArray array = (JSONArray) value;
+            int length = array.length();
+            long size = ARRAY_OVERHEAD;
+            for (int i = 0; i < length; i++) {
+                size += REFERENCE_SIZE + estimate(array.opt(i));
+            }
+            return size;
+        } else if (value instanceof String) {
+            return STRING_OVERHEAD + 2L * ((String) value).length();
+        } else if (value == null || value == JSONObject.NULL) {
+            return 0;
+        }
+        return BOXED_SIZE;
+    }
+}
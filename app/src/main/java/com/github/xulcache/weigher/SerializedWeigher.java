@@ -0,0 +1,64 @@
+package com.github.xulcache.weigher;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+
+/**
+ * 按序列化后的长度计算{@link DefaultWeigher}无法计算的Serializable对象的大小，其他数据交给{@link DefaultWeigher}。
+ * 写入时需要完整序列化一次对象，只统计长度，不保存序列化的数据
+ */
+public class SerializedWeigher implements Weigher {
+
+    @Override
+    public long weigh(Object data) {
+        long size = DefaultWeigher.weighKnown(data);
+        if (size >= 0) {
+            return size;
+        }
+        if (data instanceof Serializable) {
+            size = serializedLength((Serializable) data);
+        }
+        return size >= 0 ? size : DefaultWeigher.UNKNOWN_OBJECT_SIZE;
+    }
+
+    /**
+     * @return 对象图中包含无法序列化的对象时返回-1
+     */
+    static long serializedLength(Serializable data) {
+        CountingOutputStream counter = new CountingOutputStream();
+        ObjectOutputStream oos = null;
+        try {
+            oos = new ObjectOutputStream(counter);
+            oos.writeObject(data);
+            oos.flush();
+        } catch (IOException e) {
+            // 对象图中包含无法序列化的对象，无法计算
+            return -1;
+        } finally {
+            if (oos != null) {
+                try {
+                    oos.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+        return counter.count;
+    }
+
+    private static final class CountingOutputStream extends OutputStream {
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.github.xulcache.weigher;
+
+/**
+ * 计算缓存数据占用的大小，缓存域据此执行大小限制。
+ * 数据写入缓存时计算一次，结果保存在{@link com.github.xulcache.CacheModel}中。
+ * 自定义实现无法处理的数据类型应交给{@link DefaultWeigher}计算。
+ */
+public interface Weigher {
+
+    /**
+     * @param data 缓存数据，不为null
+     * @return 以byte为单位的数据大小，不能为负数
+     */
+    long weigh(Object data);
+}
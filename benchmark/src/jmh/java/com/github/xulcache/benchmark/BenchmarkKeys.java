@@ -0,0 +1,33 @@
+package com.github.xulcache.benchmark;
+
+import java.util.Random;
+
+/**
+ * 生成基准测试使用的key
+ */
+final class BenchmarkKeys {
+
+    private static final String URL_PREFIX = "http://img.example.com/";
+    private static final char[] KEY_CHARS =
+            "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789/_-.".toCharArray();
+
+    private BenchmarkKeys() {
+    }
+
+    /**
+     * 生成指定长度的随机url形式的key
+     */
+    static String[] randomKeys(Random random, int count, int length) {
+        String[] keys = new String[count];
+        char[] buffer = new char[length];
+        for (int i = 0; i < count; i++) {
+            for (int j = 0; j < length; j++) {
+                buffer[j] = j < URL_PREFIX.length() && length > URL_PREFIX.length() * 2
+                            ? URL_PREFIX.charAt(j)
+                            : KEY_CHARS[random.nextInt(KEY_CHARS.length)];
+            }
+            keys[i] = new String(buffer);
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,150 @@
+package com.github.xulcache.benchmark;
+
+import com.github.xulcache.CacheDomain;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 各类缓存域在不同负载下的性能：
+ * {@link #throughput}输出ops/s，{@link #latency}输出延迟分布（含p0.99），
+ * 分配速率由gc profiler输出（gc.alloc.rate.norm为每次操作分配的字节数）
+ *
+ * <p>例：./gradlew :benchmark:jmh -PjmhInclude='CacheDomainBenchmark.*'
+ */
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class CacheDomainBenchmark {
+
+    private static final int VALUE_VARIANTS = 16;
+
+    @State(Scope.Benchmark)
+    public static class DomainState {
+
+        @Param({"MEMORY", "OFF_HEAP_MEMORY", "FILE", "WRITE_BACK", "WRITE_THROUGH", "PROPERTY"})
+        public DomainType domainType;
+
+        @Param({"ZIPFIAN_GET", "PUT_HEAVY", "MIXED", "EVICTION_HEAVY", "LARGE_BLOB", "SMALL_PROPERTIES"})
+        public Workload workload;
+
+        @Param({"1"})
+        public int concurrencyLevel;
+
+        CacheDomain domain;
+        String[] keys;
+        Object[] values;
+        int[] operations;
+
+        private File _cacheDir;
+        private final AtomicInteger _threadSeed = new AtomicInteger();
+
+        @Setup
+        public void setUp() throws IOException, InterruptedException {
+            Random random = new Random(workload.ordinal());
+            keys = BenchmarkKeys.randomKeys(random, workload.keyCount, 48);
+            values = new Object[VALUE_VARIANTS];
+            for (int i = 0; i < VALUE_VARIANTS; i++) {
+                values[i] = newValue(random);
+            }
+            operations = workload.operations(random);
+
+            _cacheDir = File.createTempFile("xulcache-bench", "");
+            if (!_cacheDir.delete() || !_cacheDir.mkdirs()) {
+                throw new IOException("Can't create " + _cacheDir);
+            }
+            domain = domainType.newDomain(_cacheDir, workload.capacity(), concurrencyLevel);
+            domain.awaitReady();
+            // 预先写入全部key，读操作从开始就能命中（容量不足时由回收策略淘汰）
+            for (int i = 0; i < keys.length; i++) {
+                domain.put(keys[i], values[i % VALUE_VARIANTS]);
+            }
+        }
+
+        @TearDown
+        public void tearDown() {
+            domain.clear();
+            domain.close();
+            deleteRecursively(_cacheDir);
+        }
+
+        int nextThreadOffset() {
+            // 各线程从操作序列的不同位置开始，避免所有线程同时访问同一个key
+            return new Random(_threadSeed.incrementAndGet()).nextInt(Workload.OPERATION_COUNT);
+        }
+
+        private Object newValue(Random random) {
+            if (workload.isStringValue()) {
+                return BenchmarkKeys.randomKeys(random, 1, workload.valueSize)[0];
+            }
+            byte[] data = new byte[workload.valueSize];
+            random.nextBytes(data);
+            return data;
+        }
+
+        private static void deleteRecursively(File file) {
+            File[] children = file.listFiles();
+            if (children != null) {
+                for (File child : children) {
+                    deleteRecursively(child);
+                }
+            }
+            file.delete();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+        int cursor;
+
+        @Setup
+        public void setUp(DomainState domainState) {
+            cursor = domainState.nextThreadOffset();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public Object throughput(DomainState domainState, ThreadState threadState) {
+        return execute(domainState, threadState);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public Object latency(DomainState domainState, ThreadState threadState) {
+        return execute(domainState, threadState);
+    }
+
+    private static Object execute(DomainState domainState, ThreadState threadState) {
+        int operation = domainState.operations[threadState.cursor++ & (Workload.OPERATION_COUNT - 1)];
+        int keyIndex = operation & ~Workload.PUT_FLAG;
+        String key = domainState.keys[keyIndex];
+        CacheDomain domain = domainState.domain;
+        if ((operation & Workload.PUT_FLAG) != 0) {
+            domain.put(key, domainState.values[threadState.cursor & (VALUE_VARIANTS - 1)]);
+            return key;
+        }
+        if (domainState.workload.isStringValue()) {
+            return domain.getAsString(key);
+        }
+        return domain.getAsBinary(key);
+    }
+}
@@ -0,0 +1,118 @@
+package com.github.xulcache.benchmark;
+
+import com.github.xulcache.CacheModel;
+import com.github.xulcache.cacheimplement.CacheImpl;
+import com.github.xulcache.cacheimplement.MemoryCache;
+import com.github.xulcache.cacheimplement.OffHeapMemoryCache;
+import com.github.xulcache.cacherecycle.CacheRecycle;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 多线程并发写入、替换、删除和回收后，检查缓存的大小和数量计数与实际保存的数据一致，
+ * 并检查并发写入时超出容量的大小不超过同时写入的数据之和，写入全部返回后不超出容量。
+ * 计数不一致时以非0状态退出
+ */
+public class CounterDriftRunner {
+
+    private static final int THREADS = 16;
+    private static final int OPS_PER_THREAD = 250000;
+    private static final int KEY_SPACE = 20000;
+    private static final int MAX_VALUE_SIZE = 1024;
+    private static final long CAPACITY = 512 * 1024;
+    private static final int CONCURRENCY_LEVEL = 4;
+
+    public static void main(String[] args) throws InterruptedException {
+        boolean passed = true;
+        passed &= run("MemoryCache/LRU", newCache(false), CacheRecycle.STRATEGY_RECENTLY_UNUSED);
+        passed &= run("MemoryCache/TinyLFU", newCache(false), CacheRecycle.STRATEGY_TINY_LFU);
+        passed &= run("OffHeapMemoryCache/LRU", newCache(true), CacheRecycle.STRATEGY_RECENTLY_UNUSED);
+        if (!passed) {
+            System.exit(1);
+        }
+    }
+
+    private static CacheImpl newCache(boolean offHeap) {
+        return offHeap ? new OffHeapMemoryCache(CAPACITY, KEY_SPACE / 4, CONCURRENCY_LEVEL)
+                       : new MemoryCache(CAPACITY, KEY_SPACE / 4, CONCURRENCY_LEVEL);
+    }
+
+    private static boolean run(String name, final CacheImpl cache, int strategy)
+            throws InterruptedException {
+        cache.setRecycleStrategy(strategy);
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final AtomicLong maxOvershoot = new AtomicLong();
+
+        // 采样并发过程中超出容量的大小
+        Thread monitor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (running.get()) {
+                    long overshoot = cache.size() - cache.sizeCapacity();
+                    if (overshoot > maxOvershoot.get()) {
+                        maxOvershoot.set(overshoot);
+                    }
+                }
+            }
+        });
+        Thread[] workers = new Thread[THREADS];
+        for (int i = 0; i < THREADS; i++) {
+            final long seed = i;
+            workers[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Random random = new Random(seed);
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int op = 0; op < OPS_PER_THREAD; op++) {
+                        String key = "key" + random.nextInt(KEY_SPACE);
+                        int action = random.nextInt(10);
+                        if (action < 6) {
+                            byte[] value = new byte[1 + random.nextInt(MAX_VALUE_SIZE)];
+                            cache.putCache(new CacheModel(key, value));
+                        } else if (action < 8) {
+                            cache.removeCache(key);
+                        } else {
+                            cache.getCache(key, true);
+                        }
+                    }
+                }
+            });
+            workers[i].start();
+        }
+        monitor.start();
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        running.set(false);
+        monitor.join();
+        long elapsedMs = (System.nanoTime() - begin) / 1000000;
+
+        long actualSize = 0;
+        int actualCount = 0;
+        for (CacheModel model : cache.getAllCaches()) {
+            actualSize += model.size();
+            actualCount++;
+        }
+        boolean passed = actualSize == cache.size() && actualCount == cache.count()
+                         && cache.size() <= cache.sizeCapacity()
+                         && cache.count() <= cache.countCapacity()
+                         && maxOvershoot.get() <= (long) THREADS * MAX_VALUE_SIZE;
+        System.out.println(String.format(
+                "%-24s %s ops=%d ms=%d size=%d/%d actual=%d count=%d/%d actual=%d maxOvershoot=%d bound=%d",
+                name, passed ? "OK  " : "FAIL", (long) THREADS * OPS_PER_THREAD, elapsedMs,
+                cache.size(), cache.sizeCapacity(), actualSize,
+                cache.count(), cache.countCapacity(), actualCount,
+                maxOvershoot.get(), (long) THREADS * MAX_VALUE_SIZE));
+        return passed;
+    }
+}
@@ -0,0 +1,75 @@
+package com.github.xulcache.benchmark;
+
+import com.github.xulcache.CacheCenter;
+import com.github.xulcache.CacheDomain;
+import com.github.xulcache.cachedomain.FileCacheDomain;
+import com.github.xulcache.cachedomain.MemoryCacheDomain;
+import com.github.xulcache.cachedomain.OffHeapMemoryCacheDomain;
+import com.github.xulcache.cachedomain.PropertyCacheDomain;
+import com.github.xulcache.cachedomain.WriteBackCacheDomain;
+import com.github.xulcache.cachedomain.WriteThroughCacheDomain;
+
+import java.io.File;
+
+/**
+ * 参与基准测试的缓存域类型，按照{@link CacheCenter.CacheDomainBuilder}相同的方式创建，
+ * 但不依赖Context，直接使用指定的缓存目录
+ */
+enum DomainType {
+    MEMORY(CacheCenter.CACHE_FLAG_MEMORY) {
+        @Override
+        CacheDomain create(File cacheDir, long capacity, int concurrencyLevel) {
+            return new MemoryCacheDomain(capacity, Integer.MAX_VALUE, concurrencyLevel);
+        }
+    },
+    OFF_HEAP_MEMORY(CacheCenter.CACHE_FLAG_MEMORY | CacheCenter.CACHE_FLAG_OFF_HEAP) {
+        @Override
+        CacheDomain create(File cacheDir, long capacity, int concurrencyLevel) {
+            return new OffHeapMemoryCacheDomain(capacity, Integer.MAX_VALUE, concurrencyLevel);
+        }
+    },
+    FILE(CacheCenter.CACHE_FLAG_FILE) {
+        @Override
+        CacheDomain create(File cacheDir, long capacity, int concurrencyLevel) {
+            return new FileCacheDomain(cacheDir, capacity, Integer.MAX_VALUE, concurrencyLevel);
+        }
+    },
+    WRITE_BACK(CacheCenter.CACHE_FLAG_WRITE_BACK) {
+        @Override
+        CacheDomain create(File cacheDir, long capacity, int concurrencyLevel) {
+            return new WriteBackCacheDomain(capacity, Integer.MAX_VALUE,
+                                            cacheDir, capacity, Integer.MAX_VALUE, concurrencyLevel);
+        }
+    },
+    WRITE_THROUGH(CacheCenter.CACHE_FLAG_WRITE_THROUGH) {
+        @Override
+        CacheDomain create(File cacheDir, long capacity, int concurrencyLevel) {
+            return new WriteThroughCacheDomain(capacity, Integer.MAX_VALUE,
+                                               cacheDir, capacity, Integer.MAX_VALUE, concurrencyLevel);
+        }
+    },
+    PROPERTY(CacheCenter.CACHE_FLAG_PROPERTY) {
+        @Override
+        CacheDomain create(File cacheDir, long capacity, int concurrencyLevel) {
+            return new PropertyCacheDomain(capacity, Integer.MAX_VALUE,
+                                           cacheDir, capacity, Integer.MAX_VALUE, concurrencyLevel);
+        }
+    };
+
+    private final int _domainFlags;
+
+    DomainType(int domainFlags) {
+        _domainFlags = domainFlags;
+    }
+
+    /**
+     * 创建缓存域并设置与CacheCenter一致的flags（决定回收策略）
+     */
+    CacheDomain newDomain(File cacheDir, long capacity, int concurrencyLevel) {
+        CacheDomain domain = create(cacheDir, capacity, concurrencyLevel);
+        domain.setDomainFlags(_domainFlags);
+        return domain;
+    }
+
+    abstract CacheDomain create(File cacheDir, long capacity, int concurrencyLevel);
+}
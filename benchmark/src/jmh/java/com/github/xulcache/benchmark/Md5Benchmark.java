@@ -0,0 +1,60 @@
+package com.github.xulcache.benchmark;
+
+import com.github.xulcache.utils.Md5Utils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * md5 key计算的吞吐量，线程数由运行参数指定（-t 或 {@link Md5ScalingRunner}）
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Md5Benchmark {
+
+    private static final int KEY_COUNT = 1024;
+
+    /**
+     * key长度，分别对应短key和典型的图片url
+     */
+    @Param({"16", "96"})
+    public int keyLength;
+
+    private String[] _keys;
+    private int _index;
+
+    @Setup
+    public void setUp() {
+        _keys = BenchmarkKeys.randomKeys(new Random(keyLength), KEY_COUNT, keyLength);
+    }
+
+    @Benchmark
+    public String calMD5() {
+        return Md5Utils.calMD5(nextKey());
+    }
+
+    @Benchmark
+    public String calMD5Legacy() {
+        return LegacyMd5Utils.calMD5(nextKey());
+    }
+
+    private String nextKey() {
+        return _keys[_index++ & (KEY_COUNT - 1)];
+    }
+}
@@ -0,0 +1,38 @@
+package com.github.xulcache.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Collection;
+
+/**
+ * 依次以1、2、4、8、16、32个线程运行{@link Md5Benchmark}，输出各线程数下的总吞吐量
+ */
+public class Md5ScalingRunner {
+
+    private static final int[] THREAD_COUNTS = new int[]{1, 2, 4, 8, 16, 32};
+
+    public static void main(String[] args) throws RunnerException {
+        StringBuilder summary = new StringBuilder();
+        for (int threads : THREAD_COUNTS) {
+            Options options = new OptionsBuilder()
+                    .include(Md5Benchmark.class.getName() + "\\.")
+                    .threads(threads)
+                    .addProfiler(GCProfiler.class)
+                    .build();
+            Collection<RunResult> results = new Runner(options).run();
+            for (RunResult result : results) {
+                summary.append(String.format("threads=%-3d %-14s keyLength=%-4s %14.1f ops/ms%n",
+                        threads,
+                        result.getParams().getBenchmark().replaceAll(".*\\.", ""),
+                        result.getParams().getParam("keyLength"),
+                        result.getPrimaryResult().getScore()));
+            }
+        }
+        System.out.print(summary);
+    }
+}
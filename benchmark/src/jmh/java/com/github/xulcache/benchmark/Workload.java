@@ -0,0 +1,87 @@
+package com.github.xulcache.benchmark;
+
+import java.util.Random;
+
+/**
+ * 基准测试的负载模型，描述key数量、数据大小、读写比例、访问分布以及缓存容量
+ */
+enum Workload {
+    /**
+     * 全部为读操作，key按Zipf分布访问，缓存容量足够
+     */
+    ZIPFIAN_GET(10000, 1024, 0, true, 2.0),
+    /**
+     * 80%写操作，key均匀分布
+     */
+    PUT_HEAVY(10000, 1024, 80, false, 2.0),
+    /**
+     * 75%读、25%写，key按Zipf分布访问
+     */
+    MIXED(10000, 1024, 25, true, 2.0),
+    /**
+     * 读写各半，key均匀分布，缓存容量只有数据总量的十分之一，持续触发回收
+     */
+    EVICTION_HEAVY(10000, 1024, 50, false, 0.1),
+    /**
+     * 少量大数据（512KB），90%读
+     */
+    LARGE_BLOB(64, 512 * 1024, 10, true, 2.0),
+    /**
+     * 大量短字符串属性，90%读
+     */
+    SMALL_PROPERTIES(1000, 16, 10, true, 2.0);
+
+    /**
+     * 预先生成的操作序列长度，必须是2的幂
+     */
+    static final int OPERATION_COUNT = 1 << 16;
+
+    /**
+     * 操作序列中标记写操作的位
+     */
+    static final int PUT_FLAG = 1 << 31;
+
+    final int keyCount;
+    final int valueSize;
+    final int putPercent;
+    final boolean zipfian;
+    final double capacityRatio;
+
+    Workload(int keyCount, int valueSize, int putPercent, boolean zipfian, double capacityRatio) {
+        this.keyCount = keyCount;
+        this.valueSize = valueSize;
+        this.putPercent = putPercent;
+        this.zipfian = zipfian;
+        this.capacityRatio = capacityRatio;
+    }
+
+    /**
+     * 是否使用字符串数据
+     */
+    boolean isStringValue() {
+        return this == SMALL_PROPERTIES;
+    }
+
+    /**
+     * 缓存的大小限制
+     */
+    long capacity() {
+        return (long) ((long) keyCount * valueSize * capacityRatio);
+    }
+
+    /**
+     * 生成操作序列，每个元素低位为key序号，{@link #PUT_FLAG}表示写操作
+     */
+    int[] operations(Random random) {
+        ZipfianGenerator zipf = zipfian
+                                ? new ZipfianGenerator(keyCount, ZipfianGenerator.DEFAULT_SKEW, random)
+                                : null;
+        int[] operations = new int[OPERATION_COUNT];
+        for (int i = 0; i < OPERATION_COUNT; i++) {
+            int keyIndex = zipf != null ? zipf.next() : random.nextInt(keyCount);
+            boolean put = random.nextInt(100) < putPercent;
+            operations[i] = put ? (keyIndex | PUT_FLAG) : keyIndex;
+        }
+        return operations;
+    }
+}
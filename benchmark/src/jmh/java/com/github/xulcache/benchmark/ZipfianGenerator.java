@@ -0,0 +1,39 @@
+package com.github.xulcache.benchmark;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * 按Zipf分布生成 [0, itemCount) 之间的序号，序号越小出现频率越高
+ */
+final class ZipfianGenerator {
+
+    /**
+     * 常用的访问倾斜度，约20%的key承担80%的访问
+     */
+    static final double DEFAULT_SKEW = 0.99;
+
+    private final double[] _cumulative;
+    private final Random _random;
+
+    ZipfianGenerator(int itemCount, double skew, Random random) {
+        _cumulative = new double[itemCount];
+        _random = random;
+        double sum = 0;
+        for (int i = 0; i < itemCount; i++) {
+            sum += 1.0 / Math.pow(i + 1, skew);
+            _cumulative[i] = sum;
+        }
+        for (int i = 0; i < itemCount; i++) {
+            _cumulative[i] /= sum;
+        }
+    }
+
+    int next() {
+        int index = Arrays.binarySearch(_cumulative, _random.nextDouble());
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return Math.min(index, _cumulative.length - 1);
+    }
+}